@@ -0,0 +1,176 @@
+package com.github.colorswind.langutils.benchmark;
+
+import com.github.colorswind.langutils.LangConfig;
+import com.github.colorswind.langutils.PlayerLocaleListener;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Server;
+import org.bukkit.UnsafeValues;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a Bukkit server to run LangUtils outside of one: translation keys follow the vanilla naming scheme
+ * and items never carry meta.
+ */
+public final class BukkitStubs {
+    public static final Logger LOGGER = Logger.getLogger("LangUtils-Benchmark");
+    public static final String VERSION = System.getProperty("langutils.benchmark.version", "1.19.4");
+    public static final List<String> LOCALES = Arrays.asList(
+            "en_us", "zh_cn", "de_de", "fr_fr", "es_es", "ru_ru", "ja_jp", "pt_br", "ko_kr", "pl_pl");
+    private static boolean installed = false;
+
+    private BukkitStubs() {
+    }
+
+    public static synchronized void install() {
+        if (installed) { return; }
+        installed = true;
+        UnsafeValues unsafe = stub(UnsafeValues.class, (method, args) -> {
+            if (!method.equals("getTranslationKey")) { return null; }
+            Object target = args[0];
+            if (target instanceof ItemStack) {
+                target = ((ItemStack) target).getType();
+            }
+            if (target instanceof Material) {
+                Material material = (Material) target;
+                return (material.isBlock() ? "block." : "item.") + "minecraft." + material.getKey().getKey();
+            }
+            if (target instanceof EntityType) {
+                return "entity.minecraft." + ((EntityType) target).getKey().getKey();
+            }
+            return null;
+        });
+        ItemFactory itemFactory = stub(ItemFactory.class, (method, args) -> {
+            // ItemStack.hasItemMeta() asks whether its meta equals null meta
+            if (method.equals("equals") && args.length == 2) { return args[0] == args[1]; }
+            return null;
+        });
+        Bukkit.setServer(stub(Server.class, (method, args) -> {
+            switch (method) {
+                case "getLogger":
+                    return LOGGER;
+                case "getName":
+                    return "LangUtils-Benchmark";
+                case "getVersion":
+                    return "stub (MC: " + VERSION + ")";
+                case "getBukkitVersion":
+                    return VERSION + "-R0.1-SNAPSHOT";
+                case "getUnsafe":
+                    return unsafe;
+                case "getItemFactory":
+                    return itemFactory;
+                default:
+                    return null;
+            }
+        }));
+        registerEnchantments();
+    }
+
+    /**
+     * The server registers the implementations of the {@link Enchantment} constants; register the constants
+     * themselves so that {@link Enchantment#values()} is populated.
+     */
+    @SuppressWarnings("unchecked")
+    private static void registerEnchantments() {
+        try {
+            Field byKeyField = Enchantment.class.getDeclaredField("byKey");
+            Field byNameField = Enchantment.class.getDeclaredField("byName");
+            byKeyField.setAccessible(true);
+            byNameField.setAccessible(true);
+            Map<NamespacedKey, Enchantment> byKey = (Map<NamespacedKey, Enchantment>) byKeyField.get(null);
+            Map<String, Enchantment> byName = (Map<String, Enchantment>) byNameField.get(null);
+            for (Field field : Enchantment.class.getFields()) {
+                if (Modifier.isStatic(field.getModifiers()) && field.getType() == Enchantment.class) {
+                    Enchantment enchantment = (Enchantment) field.get(null);
+                    byKey.put(enchantment.getKey(), enchantment);
+                    byName.put(field.getName(), enchantment);
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not register stub enchantments.", e);
+        }
+    }
+
+    @Nonnull
+    public static Player player(@Nonnull UUID uuid, @Nonnull String locale) {
+        return stub(Player.class, (method, args) -> {
+            switch (method) {
+                case "getUniqueId":
+                    return uuid;
+                case "getLocale":
+                    return locale;
+                case "getName":
+                    return uuid.toString().substring(0, 8);
+                case "hashCode":
+                    return uuid.hashCode();
+                case "equals":
+                    return args[0] == null ? Boolean.FALSE : Boolean.valueOf(Proxy.isProxyClass(args[0].getClass())
+                            && uuid.equals(((Player) args[0]).getUniqueId()));
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Announce {@code player} to LangUtils the way a real join would, so that its locale is cached.
+     */
+    @Nonnull
+    public static Player join(@Nonnull Player player) {
+        new PlayerLocaleListener().onPlayerJoin(new PlayerJoinEvent(player, (String) null));
+        return player;
+    }
+
+    /**
+     * Config for the lang files under {@code -Dlangutils.benchmark.cache}. en_us.json must be copied there from a
+     * server jar; the other languages are downloaded on first use. With {@code -Dlangutils.benchmark.overlay=true},
+     * languages mostly equal to one already loaded are stored as overlays on it.
+     */
+    @Nonnull
+    public static LangConfig config(@Nonnull List<String> locales, boolean lazyLoad) {
+        File cacheDir = new File(System.getProperty("langutils.benchmark.cache", "benchmarks/cache"), VERSION);
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            throw new IllegalStateException("Fail to create cache directory: " + cacheDir.getAbsolutePath());
+        }
+        // every key, so that lookups of any namespace can be benchmarked
+        return new LangConfig(VERSION, locales, "en_us", Collections.emptyMap(), Collections.emptyList(),
+                Collections.emptyList(), cacheDir, null, lazyLoad, 4, 0, 0, 0, false,
+                Boolean.getBoolean("langutils.benchmark.overlay"), false, false);
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @Nonnull
+    private static <T> T stub(@Nonnull Class<T> type, @Nonnull Handler handler) {
+        return type.cast(Proxy.newProxyInstance(BukkitStubs.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result = handler.invoke(method.getName(), args != null ? args : new Object[0]);
+                    if (result == null && method.getReturnType().isPrimitive()) {
+                        if (method.getReturnType() == boolean.class) { return false; }
+                        if (method.getReturnType() == void.class) { return null; }
+                        return method.getReturnType() == long.class ? (Object) 0L : (Object) 0;
+                    }
+                    return result;
+                }));
+    }
+}
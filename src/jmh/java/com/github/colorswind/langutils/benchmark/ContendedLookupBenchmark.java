@@ -0,0 +1,10 @@
+package com.github.colorswind.langutils.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link LookupBenchmark} with several threads hitting the same registry, as plugins do from async tasks.
+ */
+@Threads(8)
+public class ContendedLookupBenchmark extends LookupBenchmark {
+}
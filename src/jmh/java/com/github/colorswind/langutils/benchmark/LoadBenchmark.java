@@ -0,0 +1,98 @@
+package com.github.colorswind.langutils.benchmark;
+
+import com.github.colorswind.langutils.LangRegistry;
+import com.github.colorswind.langutils.MemoryReport;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for {@link LangRegistry#init} to load every benchmark locale, and the heap they retain afterwards. The lang
+ * files are downloaded once during setup, so only reading them is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LoadBenchmark {
+
+    /**
+     * {@code json}: the compiled {@code .bin} files are deleted before each load. {@code bin}: they are kept.
+     */
+    @Param({"json", "bin"})
+    public String source;
+
+    private File cacheDir;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BukkitStubs.install();
+        LangRegistry.init(BukkitStubs.LOGGER, BukkitStubs.config(BukkitStubs.LOCALES, false)).join();
+        LangRegistry.shutdown();
+        cacheDir = BukkitStubs.config(BukkitStubs.LOCALES, false).getCacheDir();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        if (!source.equals("json")) { return; }
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".bin"));
+        if (files == null) { return; }
+        for (File file : files) {
+            if (!file.delete()) {
+                throw new IllegalStateException("Fail to delete " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        LangRegistry.shutdown();
+    }
+
+    @Benchmark
+    public void init() {
+        LangRegistry.init(BukkitStubs.LOGGER, BukkitStubs.config(BukkitStubs.LOCALES, false)).join();
+    }
+
+    /**
+     * Heap retained by the loaded locales other than en_us, as estimated by {@link LangRegistry#getMemoryReport()}:
+     * the key index and the rest of the loader's shared structures are not counted, and unlike a heap delta the figure
+     * does not depend on when the collector ran. Only the counters of this benchmark are meaningful, not its time.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        public long retainedBytes;
+        public long retainedBytesPerLocale;
+    }
+
+    @Benchmark
+    public void retainedHeap(Retained retained) {
+        LangRegistry.init(BukkitStubs.LOGGER, BukkitStubs.config(BukkitStubs.LOCALES, false)).join();
+        MemoryReport report = LangRegistry.getMemoryReport();
+        long englishBytes = 0;
+        for (MemoryReport.LocaleFootprint locale : report.getLocales()) {
+            if (locale.getLocale().equals("en_us")) {
+                englishBytes = locale.getTotalBytes();
+            }
+        }
+        retained.retainedBytes = report.getTotalBytes() - report.getSharedBytes() - englishBytes;
+        retained.retainedBytesPerLocale = retained.retainedBytes / (BukkitStubs.LOCALES.size() - 1);
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.colorswind.langutils.benchmark;
+
+import com.github.colorswind.langutils.LangRegistry;
+import com.github.colorswind.langutils.LocaleMap;
+import com.meowj.langutils.lang.LanguageHelper;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of the lookups plugins call per item, entity or message. {@link ContendedLookupBenchmark}
+ * runs the same methods from several threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+    private static final int SAMPLES = 1024;
+    private static final int MASK = SAMPLES - 1;
+
+    @Param({"zh_cn", "de_de"})
+    public String locale;
+
+    private final ItemStack[] items = new ItemStack[SAMPLES];
+    private final Enchantment[] enchantments = new Enchantment[SAMPLES];
+    private final int[] levels = new int[SAMPLES];
+    private final String[] translationKeys = new String[SAMPLES];
+    private final String[] locales = new String[SAMPLES];
+    private final Player[] players = new Player[SAMPLES];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BukkitStubs.install();
+        LangRegistry.init(BukkitStubs.LOGGER, BukkitStubs.config(BukkitStubs.LOCALES, false)).join();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Material> materials = new ArrayList<>();
+        for (Material material : Material.values()) {
+            if (material.isItem() && !material.isLegacy()) {
+                materials.add(material);
+            }
+        }
+        Enchantment[] allEnchantments = Enchantment.values();
+        LocaleMap localeMap = LangRegistry.getLocaleMap(locale);
+        for (int i = 0; i < SAMPLES; i++) {
+            items[i] = new ItemStack(materials.get(random.nextInt(materials.size())));
+            enchantments[i] = allEnchantments[random.nextInt(allEnchantments.length)];
+            levels[i] = 1 + random.nextInt(5);
+            translationKeys[i] = i % 2 == 0
+                    ? LanguageHelper.getItemUnlocalizedName(items[i])
+                    : "chat.type.text";
+            // the way clients send it, so normalization is part of the measured path
+            locales[i] = i % 4 == 0 ? locale.replace('_', '-').toUpperCase() : locale;
+            players[i] = BukkitStubs.join(BukkitStubs.player(UUID.randomUUID(), locale));
+            // warm the lazily rendered names so that every sample measures the steady state
+            localeMap.getEnchantmentDisplayName(enchantments[i], levels[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LangRegistry.shutdown();
+    }
+
+    /**
+     * Per-thread position in the sample arrays, so that threads under contention only share the registry.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = ThreadLocalRandom.current().nextInt(SAMPLES);
+
+        int next() {
+            return index++ & MASK;
+        }
+    }
+
+    @Benchmark
+    public String translateToLocal(Cursor cursor) {
+        return LanguageHelper.translateToLocal(translationKeys[cursor.next()], locale);
+    }
+
+    @Benchmark
+    public String translateToLocalWithArgs(Cursor cursor) {
+        return LanguageHelper.translateToLocal("chat.type.text", locale, "Steve", translationKeys[cursor.next()]);
+    }
+
+    @Benchmark
+    public String getItemName(Cursor cursor) {
+        return LanguageHelper.getItemName(items[cursor.next()], locale);
+    }
+
+    @Benchmark
+    public String getItemNameForPlayer(Cursor cursor) {
+        int i = cursor.next();
+        return LanguageHelper.getItemName(items[i], players[i]);
+    }
+
+    @Benchmark
+    public String getEnchantmentDisplayName(Cursor cursor) {
+        int i = cursor.next();
+        return LanguageHelper.getEnchantmentDisplayName(enchantments[i], levels[i], locale);
+    }
+
+    @Benchmark
+    public LocaleMap getLocaleMap(Cursor cursor) {
+        return LangRegistry.getLocaleMap(locales[cursor.next()]);
+    }
+
+    @Benchmark
+    public LocaleMap getLocaleMapForPlayer(Cursor cursor) {
+        return LangRegistry.getLocaleMap(players[cursor.next()]);
+    }
+}
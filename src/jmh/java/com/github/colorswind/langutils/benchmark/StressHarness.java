@@ -0,0 +1,323 @@
+package com.github.colorswind.langutils.benchmark;
+
+import com.github.colorswind.langutils.LangConfig;
+import com.github.colorswind.langutils.LangRegistry;
+import com.meowj.langutils.lang.LanguageHelper;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thousands of virtual players with a realistic mix of client locales call the item, entity, enchantment and biome
+ * APIs from many threads at once, optionally while the registry is reloaded, and every result is checked against the
+ * answer computed single-threaded beforehand.
+ * <p>
+ * Usage: {@code StressHarness [--players N] [--threads 1,2,4,8] [--seconds N] [--reload-interval MS]}
+ */
+public final class StressHarness {
+    // locales as clients send them and their share of players; the last two are not loaded and use the fallback
+    private static final String[] CLIENT_LOCALES = {
+            "en_us", "zh_cn", "ru_ru", "de_de", "pt_br", "es_es", "fr_fr", "ja_jp", "ko_kr", "pl_pl", "tr_tr", "uk_ua"};
+    private static final int[] LOCALE_WEIGHTS = {45, 12, 8, 7, 7, 6, 5, 3, 2, 1, 2, 2};
+    private static final int MAX_LEVEL = 10;
+    // one operation in this many is timed
+    private static final int LATENCY_SAMPLE_MASK = 15;
+    private static final int OPERATIONS = 4;
+
+    private final Player[] players;
+    private final int[] playerLocales;
+    private final ItemStack[] items;
+    private final EntityType[] entityTypes;
+    private final Enchantment[] enchantments;
+    private final Biome[] biomes;
+    // expected results, [locale][value]
+    private final String[][] itemNames;
+    private final String[][] entityNames;
+    private final String[][][] enchantmentNames;
+    private final String[][] biomeNames;
+
+    private StressHarness(int playerCount) {
+        List<ItemStack> itemList = new ArrayList<>();
+        for (Material material : Material.values()) {
+            if (material.isItem() && !material.isLegacy() && material != Material.AIR) {
+                itemList.add(new ItemStack(material));
+            }
+        }
+        items = itemList.toArray(new ItemStack[0]);
+        List<EntityType> entityList = new ArrayList<>(Arrays.asList(EntityType.values()));
+        entityList.remove(EntityType.UNKNOWN);
+        entityTypes = entityList.toArray(new EntityType[0]);
+        enchantments = Enchantment.values();
+        biomes = Biome.values();
+
+        itemNames = new String[CLIENT_LOCALES.length][items.length];
+        entityNames = new String[CLIENT_LOCALES.length][entityTypes.length];
+        enchantmentNames = new String[CLIENT_LOCALES.length][enchantments.length][MAX_LEVEL + 1];
+        biomeNames = new String[CLIENT_LOCALES.length][biomes.length];
+        for (int l = 0; l < CLIENT_LOCALES.length; l++) {
+            String locale = CLIENT_LOCALES[l];
+            for (int i = 0; i < items.length; i++) {
+                itemNames[l][i] = LanguageHelper.getItemName(items[i], locale);
+            }
+            for (int i = 0; i < entityTypes.length; i++) {
+                entityNames[l][i] = LanguageHelper.getEntityName(entityTypes[i], locale);
+            }
+            for (int i = 0; i < enchantments.length; i++) {
+                for (int level = 0; level <= MAX_LEVEL; level++) {
+                    enchantmentNames[l][i][level] = LanguageHelper.getEnchantmentDisplayName(enchantments[i], level,
+                            locale);
+                }
+            }
+            for (int i = 0; i < biomes.length; i++) {
+                biomeNames[l][i] = LanguageHelper.getBiomeName(biomes[i], locale);
+            }
+        }
+
+        int totalWeight = 0;
+        for (int weight : LOCALE_WEIGHTS) {
+            totalWeight += weight;
+        }
+        players = new Player[playerCount];
+        playerLocales = new int[playerCount];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int p = 0; p < playerCount; p++) {
+            int pick = random.nextInt(totalWeight);
+            int l = 0;
+            while (pick >= LOCALE_WEIGHTS[l]) {
+                pick -= LOCALE_WEIGHTS[l++];
+            }
+            playerLocales[p] = l;
+            // some clients send the hyphenated upper case form
+            String clientLocale = p % 5 == 0 ? CLIENT_LOCALES[l].replace('_', '-').toUpperCase() : CLIENT_LOCALES[l];
+            players[p] = BukkitStubs.join(BukkitStubs.player(UUID.randomUUID(), clientLocale));
+        }
+    }
+
+    /**
+     * What the workers of one run observed, merged after they stopped.
+     */
+    private static final class Result {
+        private long operations;
+        private long wrongResults;
+        // log-linear latency histogram: 8 sub-buckets per power of two
+        private final long[] latencyBuckets = new long[64 * 8];
+        private long maxLatency;
+        private String firstWrong;
+
+        private void recordLatency(long nanos) {
+            latencyBuckets[bucketOf(nanos)]++;
+            maxLatency = Math.max(maxLatency, nanos);
+        }
+
+        private void merge(@Nonnull Result other) {
+            operations += other.operations;
+            wrongResults += other.wrongResults;
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                latencyBuckets[i] += other.latencyBuckets[i];
+            }
+            maxLatency = Math.max(maxLatency, other.maxLatency);
+            if (firstWrong == null) {
+                firstWrong = other.firstWrong;
+            }
+        }
+
+        /**
+         * @return an upper bound of the sampled latency at {@code percentile}, accurate to 1/8 of its power of two
+         */
+        private long percentile(double percentile) {
+            long samples = 0;
+            for (long count : latencyBuckets) {
+                samples += count;
+            }
+            long rank = (long) Math.ceil(samples * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                seen += latencyBuckets[i];
+                if (seen >= rank && latencyBuckets[i] > 0) {
+                    return Math.min(maxLatency, upperBoundOf(i));
+                }
+            }
+            return maxLatency;
+        }
+
+        private static int bucketOf(long nanos) {
+            if (nanos < 8) { return (int) Math.max(0, nanos); }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - 3)) & 7;
+            return exponent * 8 + subBucket;
+        }
+
+        private static long upperBoundOf(int bucket) {
+            if (bucket < 8) { return bucket; }
+            int exponent = bucket / 8;
+            return ((8L + bucket % 8 + 1) << (exponent - 3)) - 1;
+        }
+    }
+
+    @Nonnull
+    private Result work(@Nonnull AtomicBoolean running) {
+        Result result = new Result();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+            int p = random.nextInt(players.length);
+            Player player = players[p];
+            int l = playerLocales[p];
+            int operation = random.nextInt(OPERATIONS);
+            int index;
+            int level = 0;
+            boolean timed = (random.nextInt() & LATENCY_SAMPLE_MASK) == 0;
+            long start = timed ? System.nanoTime() : 0;
+            String actual;
+            String expected;
+            switch (operation) {
+                case 0:
+                    index = random.nextInt(items.length);
+                    actual = LanguageHelper.getItemName(items[index], player);
+                    expected = itemNames[l][index];
+                    break;
+                case 1:
+                    index = random.nextInt(entityTypes.length);
+                    actual = LanguageHelper.getEntityName(entityTypes[index], player);
+                    expected = entityNames[l][index];
+                    break;
+                case 2:
+                    index = random.nextInt(enchantments.length);
+                    level = random.nextInt(MAX_LEVEL + 1);
+                    actual = LanguageHelper.getEnchantmentDisplayName(enchantments[index], level, player);
+                    expected = enchantmentNames[l][index][level];
+                    break;
+                default:
+                    index = random.nextInt(biomes.length);
+                    actual = LanguageHelper.getBiomeName(biomes[index], player);
+                    expected = biomeNames[l][index];
+                    break;
+            }
+            if (timed) {
+                result.recordLatency(System.nanoTime() - start);
+            }
+            result.operations++;
+            if (!expected.equals(actual)) {
+                result.wrongResults++;
+                if (result.firstWrong == null) {
+                    result.firstWrong = "operation " + operation + " index " + index + " level " + level + " for "
+                            + CLIENT_LOCALES[l] + ": expected '" + expected + "' but got '" + actual + "'";
+                }
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    private Result run(int threadCount, long nanos, @Nonnull LangConfig config, long reloadIntervalMillis)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Result[] results = new Result[threadCount];
+        CountDownLatch started = new CountDownLatch(threadCount);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                results[id] = work(running);
+            }, "Stress-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        started.await();
+        AtomicInteger reloads = new AtomicInteger();
+        Thread reloader = null;
+        if (reloadIntervalMillis > 0) {
+            reloader = new Thread(() -> {
+                while (running.get()) {
+                    LangRegistry.reload(BukkitStubs.LOGGER, config).join();
+                    reloads.incrementAndGet();
+                    try {
+                        Thread.sleep(reloadIntervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "Stress-Reload");
+            reloader.start();
+        }
+        TimeUnit.NANOSECONDS.sleep(nanos);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (reloader != null) {
+            reloader.interrupt();
+            reloader.join();
+            System.out.println("  " + reloads.get() + " reloads during the run");
+        }
+        Result total = new Result();
+        for (Result result : results) {
+            total.merge(result);
+        }
+        return total;
+    }
+
+    public static void main(@Nonnull String[] args) throws InterruptedException {
+        int playerCount = 5000;
+        int[] threadCounts = {1, 2, 4, 8, Runtime.getRuntime().availableProcessors()};
+        int seconds = 10;
+        long reloadIntervalMillis = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--players":
+                    playerCount = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threadCounts = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--reload-interval":
+                    reloadIntervalMillis = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        BukkitStubs.install();
+        LangConfig config = BukkitStubs.config(BukkitStubs.LOCALES, false);
+        LangRegistry.init(BukkitStubs.LOGGER, config).join();
+        StressHarness harness = new StressHarness(playerCount);
+        System.out.printf("%d players, %d s per run%s%n", playerCount, seconds,
+                reloadIntervalMillis > 0 ? ", reload every " + reloadIntervalMillis + " ms" : "");
+        System.out.printf("%8s %14s %14s %9s %9s %9s %9s %8s%n",
+                "threads", "ops/s", "ops/s/thread", "p50 ns", "p99 ns", "p99.9 ns", "max ns", "wrong");
+        long wrongResults = 0;
+        for (int threadCount : threadCounts) {
+            Result result = harness.run(threadCount, TimeUnit.SECONDS.toNanos(seconds), config, reloadIntervalMillis);
+            double opsPerSecond = result.operations / (double) seconds;
+            System.out.printf("%8d %14.0f %14.0f %9d %9d %9d %9d %8d%n", threadCount, opsPerSecond,
+                    opsPerSecond / threadCount, result.percentile(50), result.percentile(99),
+                    result.percentile(99.9), result.maxLatency, result.wrongResults);
+            if (result.firstWrong != null) {
+                System.out.println("  first wrong result: " + result.firstWrong);
+            }
+            wrongResults += result.wrongResults;
+        }
+        LangRegistry.shutdown();
+        if (wrongResults > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.colorswind.langutils;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Compiled form of a language file, written next to the json after it has been parsed once.
+ * <p>
+ * Layout (big endian): magic, format version, SHA-1 of the source json, entry count, key blob length, value blob
+ * length, {@code count + 1} key offsets, {@code count + 1} value offsets, the UTF-8 key blob and the UTF-8 value blob.
+ */
+final class BinaryLocaleCache {
+    private static final int MAGIC = 0x4C55_4331;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HASH_LENGTH = 20;
+    private static final int HEADER_LENGTH = 4 + 4 + HASH_LENGTH + 4 + 4 + 4;
+
+    private BinaryLocaleCache() {
+    }
+
+    @Nonnull
+    static byte[] sha1(@Nonnull File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Feed every entry of the compiled file whose key {@code filter} accepts to {@code consumer}. The other entries
+     * are skipped without decoding them.
+     *
+     * @return false without touching {@code consumer} if the file is missing, corrupt or was compiled from a
+     * different source
+     */
+    static boolean read(@Nonnull File file, @Nonnull byte[] sourceHash, @Nonnull KeyFilter filter,
+                        @Nonnull BiConsumer<String, String> consumer) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_LENGTH) { return false; }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // plain reads rather than a mapping, which would copy into the same arrays anyway and keep the file
+            // open until it is garbage collected, blocking its replacement on Windows
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) { return false; }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) { return false; }
+            byte[] hash = new byte[HASH_LENGTH];
+            header.get(hash);
+            if (!Arrays.equals(hash, sourceHash)) { return false; }
+            int count = header.getInt();
+            int keyBlobLength = header.getInt();
+            int valueBlobLength = header.getInt();
+            long expectedSize = HEADER_LENGTH + 8L * (count + 1) + keyBlobLength + valueBlobLength;
+            if (count < 0 || keyBlobLength < 0 || valueBlobLength < 0 || channel.size() != expectedSize
+                    || expectedSize > Integer.MAX_VALUE) {
+                return false;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) (expectedSize - HEADER_LENGTH)).order(ByteOrder.BIG_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) { return false; }
+            }
+            buffer.flip();
+            int[] keyOffsets = new int[count + 1];
+            int[] valueOffsets = new int[count + 1];
+            buffer.asIntBuffer().get(keyOffsets).get(valueOffsets);
+            buffer.position(8 * (count + 1));
+            byte[] keyBlob = new byte[keyBlobLength];
+            byte[] valueBlob = new byte[valueBlobLength];
+            buffer.get(keyBlob).get(valueBlob);
+            if (!isMonotonic(keyOffsets, keyBlobLength) || !isMonotonic(valueOffsets, valueBlobLength)) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                int keyLength = keyOffsets[i + 1] - keyOffsets[i];
+                if (!filter.accepts(keyBlob, keyOffsets[i], keyLength)) { continue; }
+                consumer.accept(new String(keyBlob, keyOffsets[i], keyLength, StandardCharsets.UTF_8),
+                        new String(valueBlob, valueOffsets[i], valueOffsets[i + 1] - valueOffsets[i],
+                                StandardCharsets.UTF_8));
+            }
+            return true;
+        }
+    }
+
+    private static boolean isMonotonic(@Nonnull int[] offsets, int blobLength) {
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != blobLength) { return false; }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) { return false; }
+        }
+        return true;
+    }
+
+    static void write(@Nonnull File file, @Nonnull byte[] sourceHash, @Nonnull List<String> keys,
+                      @Nonnull List<String> values) throws IOException {
+        int count = keys.size();
+        byte[][] keyBytes = new byte[count][];
+        byte[][] valueBytes = new byte[count][];
+        int keyBlobLength = 0;
+        int valueBlobLength = 0;
+        for (int i = 0; i < count; i++) {
+            keyBytes[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+            valueBytes[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+            keyBlobLength += keyBytes[i].length;
+            valueBlobLength += valueBytes[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + 8 * (count + 1) + keyBlobLength + valueBlobLength)
+                .order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).put(sourceHash)
+                .putInt(count).putInt(keyBlobLength).putInt(valueBlobLength);
+        int offset = 0;
+        for (byte[] bytes : keyBytes) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        offset = 0;
+        for (byte[] bytes : valueBytes) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] bytes : keyBytes) {
+            buffer.put(bytes);
+        }
+        for (byte[] bytes : valueBytes) {
+            buffer.put(bytes);
+        }
+
+        // unique per write, since several loaders may compile the same file at once
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            Files.write(temp.toPath(), buffer.array());
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+}
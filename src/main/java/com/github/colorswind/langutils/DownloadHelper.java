@@ -6,36 +6,127 @@ import com.google.gson.JsonObject;
 import org.bukkit.Bukkit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DownloadHelper {
     public static String VERSION_MANIFEST_URL = "https://launchermeta.mojang.com/mc/game/version_manifest_v2.json";
     public static String RESOURCES_URL = "https://resources.download.minecraft.net/";
 
+    /**
+     * Thrown if the asset index has no such language, which unlike a failed download does not go away by retrying.
+     */
+    static final class UnknownLanguageException extends IllegalArgumentException {
+        UnknownLanguageException(@Nonnull String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Fetch the asset index of {@code targetVersion} without caching anything, so every call downloads it again.
+     *
+     * @see #fetchAssertIndex(String, File)
+     */
     @Nonnull
     public static JsonObject fetchAssertIndex(@Nonnull String targetVersion) throws IllegalArgumentException {
-        JsonObject versionManifest = getJsonFromUrl(VERSION_MANIFEST_URL);
+        File tempDir = null;
+        try {
+            tempDir = Files.createTempDirectory("langutils").toFile();
+            File cacheDir = new File(tempDir, "version");
+            if (!cacheDir.mkdir()) {
+                throw new IOException("Fail to create directory: " + cacheDir.getAbsolutePath());
+            }
+            return fetchAssertIndex(targetVersion, cacheDir);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not fetch asset index for version: " + targetVersion, e);
+        } finally {
+            if (tempDir != null) {
+                deleteRecursively(tempDir);
+            }
+        }
+    }
 
-        // Step 2: Find version 1.20.6
+    private static void deleteRecursively(@Nonnull File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Fetch the asset index of {@code targetVersion}, reusing what an earlier call stored in {@code cacheDir}.
+     * <p>
+     * The version details and the asset index of a given version never change, so once they are on disk no request is
+     * made at all. Both are checked against the SHA-1 their parent lists, on download and on every later call. The
+     * version manifest, stored in the parent directory and shared by every version, is only revalidated with
+     * ETag/If-Modified-Since when it does not list {@code targetVersion} yet.
+     */
+    @Nonnull
+    public static JsonObject fetchAssertIndex(@Nonnull String targetVersion, @Nonnull File cacheDir)
+            throws IllegalArgumentException {
+        return fetchAssertIndex(targetVersion, cacheDir, new LongAdder());
+    }
+
+    /**
+     * @param downloaded incremented by the number of bytes downloaded
+     */
+    @Nonnull
+    static JsonObject fetchAssertIndex(@Nonnull String targetVersion, @Nonnull File cacheDir,
+                                       @Nonnull LongAdder downloaded) {
+        File versionFile = new File(cacheDir, "version.json");
+        File manifestFile = new File(cacheDir.getParentFile(), "version_manifest_v2.json");
+        // a version json kept without a manifest listing it, e.g. from an older release, can only be trusted
+        JsonObject version = manifestFile.isFile() ? findVersion(getJsonFromFile(manifestFile), targetVersion) : null;
+        if (!versionFile.isFile() || version != null && !hashOf(version).equals(sha1Hex(versionFile))) {
+            if (version == null) {
+                downloaded.add(downloadIfModified(VERSION_MANIFEST_URL, manifestFile));
+                version = findVersion(getJsonFromFile(manifestFile), targetVersion);
+            }
+            if (version == null) {
+                throw new IllegalArgumentException("Could not find asset index for version: " + targetVersion);
+            }
+            downloaded.add(downloadVerified(version.get("url").getAsString(), hashOf(version), versionFile));
+        }
+        JsonObject assetIndex = getJsonFromFile(versionFile).getAsJsonObject("assetIndex");
+        File assetIndexFile = new File(cacheDir, "asset-index.json");
+        String assetIndexHash = hashOf(assetIndex);
+        if (!assetIndexFile.isFile() || !assetIndexHash.equals(sha1Hex(assetIndexFile))) {
+            downloaded.add(downloadVerified(assetIndex.get("url").getAsString(), assetIndexHash, assetIndexFile));
+        }
+        return getJsonFromFile(assetIndexFile);
+    }
+
+    @Nullable
+    private static JsonObject findVersion(@Nonnull JsonObject versionManifest, @Nonnull String targetVersion) {
         JsonArray versions = versionManifest.getAsJsonArray("versions");
-        String assetIndexUrl = null;
         for (int i = 0; i < versions.size(); i++) {
             JsonObject version = versions.get(i).getAsJsonObject();
             if (version.get("id").getAsString().equals(targetVersion)) {
-                String versionUrl = version.get("url").getAsString();
-                JsonObject versionDetails = getJsonFromUrl(versionUrl);
-                JsonObject assetIndex = versionDetails.get("assetIndex").getAsJsonObject();
-                assetIndexUrl = assetIndex.get("url").getAsString();
-                break;
+                return version;
             }
         }
-        if (assetIndexUrl == null) {
-            throw new IllegalArgumentException("Could not find asset index for version: " + targetVersion);
-        }
-        return getJsonFromUrl(assetIndexUrl);
+        return null;
+    }
+
+    @Nonnull
+    private static String hashOf(@Nonnull JsonObject reference) {
+        return reference.get("sha1").getAsString().toLowerCase();
     }
 
     public static void copyEnglish(@Nonnull File target) {
@@ -50,41 +141,196 @@ public class DownloadHelper {
     }
 
     public static void downloadLang(@Nonnull JsonObject assetIndex, @Nonnull String lang, @Nonnull File target) {
+        downloadLang(assetIndex, lang, target, null);
+    }
+
+    /**
+     * Download the language object {@code lang} to {@code target}, verifying its SHA-1 against the asset index.
+     *
+     * @param assetStore a directory laid out like the launcher's {@code assets} directory, shared between servers
+     *                   and versions. If the object is already in {@code assetStore/objects/xx/hash} it is reused,
+     *                   otherwise it is downloaded there first. Null to download straight to {@code target}.
+     */
+    public static void downloadLang(@Nonnull JsonObject assetIndex, @Nonnull String lang, @Nonnull File target,
+                                    @Nullable File assetStore) {
+        downloadLang(assetIndex, lang, target, assetStore, new LongAdder());
+    }
+
+    /**
+     * @param downloaded incremented by the number of bytes downloaded, which stays 0 if the store already had the
+     *                   object
+     */
+    static void downloadLang(@Nonnull JsonObject assetIndex, @Nonnull String lang, @Nonnull File target,
+                             @Nullable File assetStore, @Nonnull LongAdder downloaded) {
         JsonObject objects = assetIndex.getAsJsonObject("objects");
         JsonObject langJson = objects.getAsJsonObject("minecraft/lang/" + lang + ".json");
-        String hash = langJson.get("hash").getAsString();
+        if (langJson == null) {
+            throw new UnknownLanguageException("Unknown language: " + lang);
+        }
+        String hash = langJson.get("hash").getAsString().toLowerCase();
         String languageFileUrl = RESOURCES_URL + hash.substring(0, 2) + "/" + hash;
+        if (assetStore == null) {
+            downloaded.add(downloadVerified(languageFileUrl, hash, target));
+            return;
+        }
+        File object = new File(new File(new File(assetStore, "objects"), hash.substring(0, 2)), hash);
+        if (!object.isFile() || !hash.equals(sha1Hex(object))) {
+            downloaded.add(downloadVerified(languageFileUrl, hash, object));
+        }
         try {
+            Files.deleteIfExists(target.toPath());
+            try {
+                // the link shares its content with the store: target may only ever be replaced, never written in
+                // place, or the store and every other server linked to it would be corrupted
+                Files.createLink(target.toPath(), object.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                // e.g. the store is on another file system
+                try (InputStream is = Files.newInputStream(object.toPath())) {
+                    copyAtomically(is, target);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not copy language from: " + object.getAbsolutePath(), e);
+        }
+    }
 
-            URL url = new URL(languageFileUrl);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    /**
+     * Download {@code urlString} to {@code target} if its content has the SHA-1 {@code hash}. The content is written
+     * to a temporary file first, so other processes sharing {@code target} never see a partial or corrupt file.
+     *
+     * @return the number of bytes downloaded
+     */
+    private static long downloadVerified(@Nonnull String urlString, @Nonnull String hash, @Nonnull File target) {
+        File dir = target.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IllegalArgumentException("Fail to create directory: " + dir.getAbsolutePath());
+        }
+        File temp = null;
+        try {
+            // unique per download, since several servers may fetch the same object at once
+            temp = File.createTempFile(target.getName(), ".tmp", dir);
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            HttpURLConnection conn = (HttpURLConnection) new URL(urlString).openConnection();
             conn.setRequestMethod("GET");
-
-            try (InputStream is = conn.getInputStream()) {
-                java.nio.file.Files.copy(is, target.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            long size;
+            try (InputStream is = new DigestInputStream(conn.getInputStream(), digest)) {
+                size = Files.copy(is, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            String actual = toHex(digest.digest());
+            if (!actual.equals(hash)) {
+                throw new IOException("SHA-1 mismatch, expected " + hash + " but got " + actual);
+            }
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
+            return size;
         } catch (Exception e) {
-            throw new IllegalArgumentException("Could not download language from: " + languageFileUrl, e);
+            throw new IllegalArgumentException("Could not download from: " + urlString, e);
+        } finally {
+            if (temp != null && temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    @Nullable
+    private static String sha1Hex(@Nonnull File file) {
+        try {
+            return toHex(BinaryLocaleCache.sha1(file));
+        } catch (IOException e) {
+            return null;
         }
     }
 
     @Nonnull
-    private static JsonObject getJsonFromUrl(@Nonnull String urlString) {
+    private static String toHex(@Nonnull byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    @Nonnull
+    private static JsonObject getJsonFromFile(@Nonnull File file) {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, JsonObject.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not read JSON from file: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Refresh {@code target} from {@code urlString} with a conditional request. If the server cannot be reached but a
+     * copy is already on disk, that copy is kept so the plugin keeps working offline.
+     *
+     * @return the number of bytes downloaded, 0 if {@code target} was kept
+     */
+    private static long downloadIfModified(@Nonnull String urlString, @Nonnull File target) {
+        File validatorFile = new File(target.getParentFile(), target.getName() + ".properties");
+        Properties validators = new Properties();
+        if (target.isFile() && validatorFile.isFile()) {
+            try (InputStream is = Files.newInputStream(validatorFile.toPath())) {
+                validators.load(is);
+            } catch (IOException ignored) {
+                validators.clear();
+            }
+        }
         try {
-            URL url = new URL(urlString);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            HttpURLConnection conn = (HttpURLConnection) new URL(urlString).openConnection();
             conn.setRequestMethod("GET");
-
-            try (InputStream is = conn.getInputStream(); BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
+            if (urlString.equals(validators.getProperty("url"))) {
+                String etag = validators.getProperty("etag");
+                String lastModified = validators.getProperty("last-modified");
+                if (etag != null) {
+                    conn.setRequestProperty("If-None-Match", etag);
                 }
-                return new Gson().fromJson(response.toString(), JsonObject.class);
+                if (lastModified != null) {
+                    conn.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+            if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                conn.disconnect();
+                return 0;
+            }
+            long size;
+            try (InputStream is = conn.getInputStream()) {
+                size = copyAtomically(is, target);
             }
+            Properties newValidators = new Properties();
+            newValidators.setProperty("url", urlString);
+            if (conn.getHeaderField("ETag") != null) {
+                newValidators.setProperty("etag", conn.getHeaderField("ETag"));
+            }
+            if (conn.getHeaderField("Last-Modified") != null) {
+                newValidators.setProperty("last-modified", conn.getHeaderField("Last-Modified"));
+            }
+            try (OutputStream os = Files.newOutputStream(validatorFile.toPath())) {
+                newValidators.store(os, null);
+            }
+            return size;
         } catch (Exception e) {
-            throw new IllegalArgumentException("Could not get JSON from URL: " + urlString, e);
+            if (!target.isFile()) {
+                throw new IllegalArgumentException("Could not get JSON from URL: " + urlString, e);
+            }
+            return 0;
+        }
+    }
+
+    private static long copyAtomically(@Nonnull InputStream is, @Nonnull File target) throws IOException {
+        // unique per copy, since several servers may share the directory of target
+        File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+        try {
+            long size = Files.copy(is, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return size;
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
         }
     }
 
@@ -0,0 +1,99 @@
+package com.github.colorswind.langutils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Decides by prefix which translation keys are loaded. A key is kept if it starts with an included prefix, or if
+ * none are configured, and does not start with an excluded one.
+ */
+final class KeyFilter {
+    // bound on the filtered keys warned about, further ones are not reported
+    private static final int MAX_WARNED_KEYS = 1024;
+
+    private final String[] includes;
+    private final String[] excludes;
+    // the same prefixes in UTF-8, to test keys of the compiled language files before decoding them
+    private final byte[][] includeBytes;
+    private final byte[][] excludeBytes;
+    @Nullable
+    private final Logger logger;
+    private final Set<String> warnedKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param logger where to warn about lookups of filtered keys, null to stay silent
+     */
+    KeyFilter(@Nonnull List<String> includes, @Nonnull List<String> excludes, @Nullable Logger logger) {
+        this.logger = logger;
+        this.includes = includes.toArray(new String[0]);
+        this.excludes = excludes.toArray(new String[0]);
+        this.includeBytes = toBytes(this.includes);
+        this.excludeBytes = toBytes(this.excludes);
+    }
+
+    @Nonnull
+    private static byte[][] toBytes(@Nonnull String[] prefixes) {
+        byte[][] bytes = new byte[prefixes.length][];
+        for (int i = 0; i < prefixes.length; i++) {
+            bytes[i] = prefixes[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return whether every key is kept, so that callers can skip testing them
+     */
+    boolean acceptsAll() {
+        return includes.length == 0 && excludes.length == 0;
+    }
+
+    boolean accepts(@Nonnull String key) {
+        for (String exclude : excludes) {
+            if (key.startsWith(exclude)) { return false; }
+        }
+        if (includes.length == 0) { return true; }
+        for (String include : includes) {
+            if (key.startsWith(include)) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the UTF-8 key at {@code blob[offset, offset + length)} is kept
+     */
+    boolean accepts(@Nonnull byte[] blob, int offset, int length) {
+        for (byte[] exclude : excludeBytes) {
+            if (startsWith(blob, offset, length, exclude)) { return false; }
+        }
+        if (includeBytes.length == 0) { return true; }
+        for (byte[] include : includeBytes) {
+            if (startsWith(blob, offset, length, include)) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Warn once per key if a lookup of {@code key} missed because the filter dropped it, so that it is not mistaken
+     * for a key missing from the language files.
+     */
+    void checkMiss(@Nonnull String key) {
+        if (logger == null || accepts(key) || warnedKeys.size() >= MAX_WARNED_KEYS || !warnedKeys.add(key)) {
+            return;
+        }
+        logger.warning("Translation key " + key + " is not loaded because of IncludeKeys or ExcludeKeys in "
+                + "config.yml.");
+    }
+
+    private static boolean startsWith(@Nonnull byte[] blob, int offset, int length, @Nonnull byte[] prefix) {
+        if (prefix.length > length) { return false; }
+        for (int i = 0; i < prefix.length; i++) {
+            if (blob[offset + i] != prefix[i]) { return false; }
+        }
+        return true;
+    }
+}
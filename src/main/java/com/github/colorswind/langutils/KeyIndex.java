@@ -0,0 +1,179 @@
+package com.github.colorswind.langutils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable translation key dictionary shared by every {@link LocaleMap} of a registry.
+ * <p>
+ * Keys get dense ids {@code 0..size()-1}, so a locale only stores a {@code String[]} column of values. Ids are found
+ * through a hash-and-displace perfect hash: the cached {@link String#hashCode()} picks a bucket, the bucket's
+ * displacement picks exactly one slot, and a single {@code equals} confirms the key.
+ */
+public final class KeyIndex {
+    private static final int MAX_DISPLACEMENT = 1 << 24;
+
+    private final String[] keys;
+    private final int[] displacements;
+    private final int[] slotIds;
+    // keys whose String.hashCode() equals another key's can never be separated by displacement
+    private final Map<String, Integer> collisions;
+    // the filter the keys passed, null if they were not filtered
+    @Nullable
+    private final KeyFilter filter;
+
+    public KeyIndex(@Nonnull Collection<String> keySet) {
+        this(keySet, null);
+    }
+
+    KeyIndex(@Nonnull Collection<String> keySet, @Nullable KeyFilter filter) {
+        this.filter = filter;
+        Set<Integer> seenHashes = new HashSet<>();
+        List<String> placed = new ArrayList<>(keySet.size());
+        List<String> colliding = new ArrayList<>();
+        for (String key : keySet) {
+            if (seenHashes.add(key.hashCode())) {
+                placed.add(key);
+            } else {
+                colliding.add(key);
+            }
+        }
+        this.keys = new String[placed.size() + colliding.size()];
+        int slotCount = Math.max(1, placed.size() * 10 / 9 + 1);
+        this.displacements = new int[Math.max(1, placed.size() / 3 + 1)];
+        this.slotIds = new int[slotCount];
+        Arrays.fill(slotIds, -1);
+
+        List<List<Integer>> buckets = new ArrayList<>(displacements.length);
+        for (int i = 0; i < displacements.length; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int id = 0; id < placed.size(); id++) {
+            keys[id] = placed.get(id);
+            buckets.get(bucketOf(keys[id].hashCode(), displacements.length)).add(id);
+        }
+        List<Integer> order = new ArrayList<>(buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Integer.compare(buckets.get(b).size(), buckets.get(a).size()));
+
+        int[] candidate = new int[0];
+        for (int bucket : order) {
+            List<Integer> ids = buckets.get(bucket);
+            if (ids.isEmpty()) { break; }
+            if (candidate.length < ids.size()) {
+                candidate = new int[ids.size()];
+            }
+            int displacement = 1;
+            while (!tryPlace(ids, displacement, candidate)) {
+                if (++displacement >= MAX_DISPLACEMENT) {
+                    throw new IllegalStateException("Could not build key index for " + keySet.size() + " keys.");
+                }
+            }
+            displacements[bucket] = displacement;
+            for (int i = 0; i < ids.size(); i++) {
+                slotIds[candidate[i]] = ids.get(i);
+            }
+        }
+
+        if (colliding.isEmpty()) {
+            this.collisions = Collections.emptyMap();
+        } else {
+            this.collisions = new HashMap<>();
+            for (int i = 0; i < colliding.size(); i++) {
+                int id = placed.size() + i;
+                keys[id] = colliding.get(i);
+                collisions.put(keys[id], id);
+            }
+        }
+    }
+
+    private boolean tryPlace(@Nonnull List<Integer> ids, int displacement, @Nonnull int[] candidate) {
+        for (int i = 0; i < ids.size(); i++) {
+            int slot = slotOf(keys[ids.get(i)].hashCode(), displacement, slotIds.length);
+            if (slotIds[slot] >= 0) { return false; }
+            for (int j = 0; j < i; j++) {
+                if (candidate[j] == slot) { return false; }
+            }
+            candidate[i] = slot;
+        }
+        return true;
+    }
+
+    private static int mix(int hash, int seed) {
+        int h = hash ^ (seed * 0x9E3779B9);
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int bucketOf(int hash, int bucketCount) {
+        return (mix(hash, 0) & Integer.MAX_VALUE) % bucketCount;
+    }
+
+    private static int slotOf(int hash, int displacement, int slotCount) {
+        return (mix(hash, displacement) & Integer.MAX_VALUE) % slotCount;
+    }
+
+    /**
+     * @return id of the key, or -1 if the key is not part of this index
+     */
+    public int indexOf(@Nonnull String key) {
+        int hash = key.hashCode();
+        int id = slotIds[slotOf(hash, displacements[bucketOf(hash, displacements.length)], slotIds.length)];
+        if (id >= 0 && keys[id].equals(key)) {
+            return id;
+        }
+        if (collisions.isEmpty()) {
+            return -1;
+        }
+        Integer collided = collisions.get(key);
+        return collided != null ? collided : -1;
+    }
+
+    /**
+     * @return the filter that decided which keys are part of this index, null if it holds every key
+     */
+    @Nullable
+    KeyFilter getFilter() {
+        return filter;
+    }
+
+    @Nonnull
+    public String keyAt(int id) {
+        return keys[id];
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return the estimated size of this index and its keys, see {@link MemoryReport}
+     */
+    long estimateBytes(@Nonnull MemoryEstimator estimator) {
+        if (!estimator.visit(this)) { return 0; }
+        long size = MemoryEstimator.object(4, 0, 0) + estimator.strings(keys) + estimator.ints(displacements)
+                + estimator.ints(slotIds);
+        if (!collisions.isEmpty()) {
+            // HashMap table, then a node and a boxed id per colliding key
+            size += MemoryEstimator.object(6, 4, 0)
+                    + MemoryEstimator.referenceArray(Integer.highestOneBit(collisions.size()) * 4)
+                    + collisions.size() * (MemoryEstimator.object(3, 1, 0) + MemoryEstimator.object(0, 1, 0));
+        }
+        return size;
+    }
+}
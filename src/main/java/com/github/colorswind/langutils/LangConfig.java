@@ -0,0 +1,227 @@
+package com.github.colorswind.langutils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public final class LangConfig {
+    private final String minecraftVersion;
+    private final List<String> loadLanguages;
+    private final String fallbackLanguage;
+    private final File cacheDir;
+    private final File assetStore;
+    private final boolean lazyLoad;
+    private final int loaderThreads;
+    private final int maxLoadedLanguages;
+    private final long maxLanguageMemory;
+    private final long evictIdleMillis;
+    private final boolean deduplicateStrings;
+    private final boolean overlayVariants;
+    private final boolean dumpLanguages;
+    private final boolean writeStartupTrace;
+    private final Map<String, List<String>> fallbackChains;
+    private final List<String> includeKeys;
+    private final List<String> excludeKeys;
+
+    public LangConfig(@Nonnull String minecraftVersion, @Nonnull List<String> loadLanguages,
+                      @Nonnull String fallbackLanguage, @Nonnull Map<String, List<String>> fallbackChains,
+                      @Nonnull List<String> includeKeys, @Nonnull List<String> excludeKeys, @Nonnull File cacheDir,
+                      @Nullable File assetStore, boolean lazyLoad, int loaderThreads, int maxLoadedLanguages,
+                      long maxLanguageMemory, long evictIdleMillis, boolean deduplicateStrings,
+                      boolean overlayVariants, boolean dumpLanguages, boolean writeStartupTrace) {
+        this.minecraftVersion = minecraftVersion;
+        List<String> locales = new ArrayList<>(loadLanguages.size());
+        for (String locale : loadLanguages) {
+            locales.add(LangRegistry.standardizeLocale(locale));
+        }
+        this.loadLanguages = Collections.unmodifiableList(locales);
+        this.fallbackLanguage = LangRegistry.standardizeLocale(fallbackLanguage);
+        Map<String, List<String>> chains = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : fallbackChains.entrySet()) {
+            List<String> chain = new ArrayList<>(entry.getValue().size());
+            for (String locale : entry.getValue()) {
+                chain.add(LangRegistry.standardizeLocale(locale));
+            }
+            chains.put(LangRegistry.standardizeLocale(entry.getKey()), Collections.unmodifiableList(chain));
+        }
+        this.fallbackChains = Collections.unmodifiableMap(chains);
+        this.includeKeys = Collections.unmodifiableList(new ArrayList<>(includeKeys));
+        this.excludeKeys = Collections.unmodifiableList(new ArrayList<>(excludeKeys));
+        this.cacheDir = cacheDir;
+        this.assetStore = assetStore;
+        this.lazyLoad = lazyLoad;
+        this.loaderThreads = Math.max(1, loaderThreads);
+        this.maxLoadedLanguages = Math.max(0, maxLoadedLanguages);
+        this.maxLanguageMemory = Math.max(0, maxLanguageMemory);
+        this.evictIdleMillis = Math.max(0, evictIdleMillis);
+        this.deduplicateStrings = deduplicateStrings;
+        this.overlayVariants = overlayVariants;
+        this.dumpLanguages = dumpLanguages;
+        this.writeStartupTrace = writeStartupTrace;
+    }
+
+    /**
+     * Read the plugin config. Also applies the download urls to {@link DownloadHelper} and creates the cache
+     * directory of the detected Minecraft version.
+     */
+    @Nonnull
+    public static LangConfig load(@Nonnull FileConfiguration config, @Nonnull File dataFolder,
+                                  @Nonnull Logger logger) {
+        DownloadHelper.VERSION_MANIFEST_URL = Objects.requireNonNull(config.getString("VersionManifestUrl"));
+        DownloadHelper.RESOURCES_URL = Objects.requireNonNull(config.getString("ResourcesUrl"));
+        List<String> loadLanguages = Objects.requireNonNull(config.getStringList("LoadLanguage"));
+        String minecraftVersion = Objects.requireNonNull(config.getString("MinecraftVersion"));
+        if (minecraftVersion.equalsIgnoreCase("auto")) {
+            String regex = "(?<=MC: )\\d+\\.\\d+\\.\\d+";
+            Pattern pattern = Pattern.compile(regex);
+            Matcher matcher = pattern.matcher(Bukkit.getVersion());
+            if (matcher.find()) {
+                minecraftVersion = matcher.group();
+                logger.info("Detect Minecraft version: " + minecraftVersion + ".");
+            } else {
+                logger.severe("Fail to detect Minecraft version, please set in config.yml.");
+                throw new IllegalArgumentException("Unknown minecraft version.");
+            }
+        }
+        String fallbackLanguage = Objects.requireNonNull(config.getString("FallbackLanguage"));
+        Map<String, List<String>> fallbackChains = new HashMap<>();
+        ConfigurationSection chainSection = config.getConfigurationSection("FallbackChains");
+        if (chainSection != null) {
+            for (String locale : chainSection.getKeys(false)) {
+                fallbackChains.put(locale, chainSection.getStringList(locale));
+            }
+        }
+        // every key unless configured, so that configs from before the filter keep translating every namespace
+        List<String> includeKeys = config.getStringList("IncludeKeys");
+        List<String> excludeKeys = config.getStringList("ExcludeKeys");
+        File cacheDir = new File(new File(dataFolder, "cache"), minecraftVersion);
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            throw new IllegalArgumentException("Fail to create cache directory: " + cacheDir.getAbsolutePath());
+        }
+        String assetStorePath = config.getString("SharedAssetStore", "");
+        File assetStore = assetStorePath == null || assetStorePath.isEmpty() ? null : new File(assetStorePath);
+        return new LangConfig(minecraftVersion, loadLanguages, fallbackLanguage, fallbackChains, includeKeys,
+                excludeKeys, cacheDir, assetStore, config.getBoolean("LazyLoadLanguage", false),
+                config.getInt("LoaderThreads", 4), config.getInt("MaxLoadedLanguages", 0),
+                config.getLong("MaxLanguageMemoryMiB", 0) * 1024 * 1024,
+                config.getLong("EvictIdleMinutes", 30) * 60 * 1000, config.getBoolean("DeduplicateStrings", false),
+                config.getBoolean("OverlayVariants", false), config.getBoolean("DumpLanguages", true),
+                config.getBoolean("WriteStartupTrace", false));
+    }
+
+    @Nonnull
+    public String getMinecraftVersion() {
+        return minecraftVersion;
+    }
+
+    @Nonnull
+    public List<String> getLoadLanguages() {
+        return loadLanguages;
+    }
+
+    @Nonnull
+    public String getFallbackLanguage() {
+        return fallbackLanguage;
+    }
+
+    /**
+     * @return the languages to look up, in order, before the fallback language when a key is missing in the language
+     * they are mapped to
+     */
+    @Nonnull
+    public Map<String, List<String>> getFallbackChains() {
+        return fallbackChains;
+    }
+
+    /**
+     * @return the prefixes of the keys to load, empty to load every key not excluded
+     */
+    @Nonnull
+    public List<String> getIncludeKeys() {
+        return includeKeys;
+    }
+
+    /**
+     * @return the prefixes of the keys not to load, even if they are included
+     */
+    @Nonnull
+    public List<String> getExcludeKeys() {
+        return excludeKeys;
+    }
+
+    @Nonnull
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * @return the directory shared with other servers to store language objects by hash, or null if every server
+     * downloads into its own cache
+     */
+    @Nullable
+    public File getAssetStore() {
+        return assetStore;
+    }
+
+    public boolean isLazyLoad() {
+        return lazyLoad;
+    }
+
+    public int getLoaderThreads() {
+        return loaderThreads;
+    }
+
+    /**
+     * @return how many languages may be loaded before idle ones loaded on demand are unloaded, 0 for no limit
+     */
+    public int getMaxLoadedLanguages() {
+        return maxLoadedLanguages;
+    }
+
+    /**
+     * @return the estimated bytes the languages may retain before idle ones loaded on demand are unloaded, 0 for no
+     * limit
+     */
+    public long getMaxLanguageMemory() {
+        return maxLanguageMemory;
+    }
+
+    /**
+     * @return how long a language must go without lookups before it may be unloaded
+     */
+    public long getEvictIdleMillis() {
+        return evictIdleMillis;
+    }
+
+    public boolean isDeduplicateStrings() {
+        return deduplicateStrings;
+    }
+
+    /**
+     * @return whether a language mostly equal to one already loaded only stores the values that differ from it
+     */
+    public boolean isOverlayVariants() {
+        return overlayVariants;
+    }
+
+    public boolean isDumpLanguages() {
+        return dumpLanguages;
+    }
+
+    public boolean isWriteStartupTrace() {
+        return writeStartupTrace;
+    }
+}
@@ -1,69 +1,452 @@
 package com.github.colorswind.langutils;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class LangRegistry {
-    private static final Map<String, LocaleMap> LOADED_LOCALE_MAPS = new HashMap<>();
-    private static String FALLBACK_LANGUAGE = "en_us";
+    private static final AtomicReference<Snapshot> SNAPSHOT = new AtomicReference<>();
+    private static final AtomicBoolean RELOADING = new AtomicBoolean(false);
+    private static volatile CompletableFuture<Void> READY_FUTURE = new CompletableFuture<>();
+    private static final int MAX_STANDARDIZED_LOCALES = 1024;
+    private static final Map<String, String> STANDARDIZED_LOCALES = new ConcurrentHashMap<>();
+    private static final Map<UUID, PlayerLocale> PLAYER_LOCALES = new ConcurrentHashMap<>();
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+    // coarse clock of the last-access times, advanced by evictIdleLocales so that lookups never read the time
+    private static volatile long CLOCK = System.currentTimeMillis();
 
+    /**
+     * Everything a lookup needs, published as a whole so that readers on any thread see a consistent registry.
+     */
+    private static final class Snapshot {
+        // identifies the snapshot without keeping it reachable
+        private final long generation = GENERATIONS.incrementAndGet();
+        private final LocaleLoader loader;
+        private final Map<String, LocaleMap> localeMaps;
+        private final LocaleMap fallbackMap;
+
+        private Snapshot(@Nonnull LocaleLoader loader, @Nonnull Map<String, LocaleMap> localeMaps) {
+            this.loader = loader;
+            this.localeMaps = Collections.unmodifiableMap(localeMaps);
+            LocaleMap fallbackMap = localeMaps.get(loader.config.getFallbackLanguage());
+            this.fallbackMap = fallbackMap != null ? fallbackMap : loader.englishMap;
+        }
+
+        @Nonnull
+        private Snapshot with(@Nonnull String locale, @Nonnull LocaleMap localeMap) {
+            Map<String, LocaleMap> localeMaps = new HashMap<>(this.localeMaps);
+            localeMaps.put(locale, localeMap);
+            return new Snapshot(loader, localeMaps);
+        }
+
+        @Nonnull
+        private Snapshot without(@Nonnull String locale) {
+            Map<String, LocaleMap> localeMaps = new HashMap<>(this.localeMaps);
+            localeMaps.remove(locale);
+            return new Snapshot(loader, localeMaps);
+        }
+    }
+
+    /**
+     * The locale map a player resolved to, valid for as long as the snapshot of {@link #generation} is the published
+     * one. Holds the generation rather than the snapshot, so that an idle player does not keep a replaced registry
+     * reachable.
+     */
+    private static final class PlayerLocale {
+        private final String locale;
+        private final long generation;
+        private final LocaleMap localeMap;
+
+        private PlayerLocale(@Nonnull String locale, @Nonnull Snapshot snapshot) {
+            this.locale = locale;
+            this.generation = snapshot.generation;
+            this.localeMap = getLocaleMap(snapshot, locale);
+        }
+    }
+
+    /**
+     * @return the lower case, underscore separated form of {@code locale}. Results are cached, so repeated calls with
+     * the same client locale return the same instance without allocating.
+     */
     @Nonnull
     public static String standardizeLocale(@Nonnull String locale) {
-        return locale.toLowerCase().replace('-', '_');
+        String standardized = STANDARDIZED_LOCALES.get(locale);
+        if (standardized == null) {
+            standardized = locale.toLowerCase().replace('-', '_');
+            if (STANDARDIZED_LOCALES.size() < MAX_STANDARDIZED_LOCALES) {
+                String previous = STANDARDIZED_LOCALES.putIfAbsent(locale, standardized);
+                if (previous != null) {
+                    standardized = previous;
+                }
+            }
+        }
+        return standardized;
     }
 
+    /**
+     * Load {@code localeList} with the defaults of the plugin config and wait until every locale has been tried.
+     *
+     * @see #init(Logger, LangConfig)
+     */
     public static void init(@Nonnull Logger logger, @Nonnull String version, @Nonnull List<String> localeList,
-                            @Nonnull String fallbackLanguage, @Nonnull File cacheDir)  throws IOException {
-        LangRegistry.FALLBACK_LANGUAGE = standardizeLocale(fallbackLanguage);
-        Gson gson = new Gson();
-        JsonObject assertIndex = null;
-        for (String locale : localeList) {
-            locale = standardizeLocale(locale);
-            File localeFile = new File(cacheDir, locale + ".json");
-            if (!localeFile.exists()) {
-                if (locale.equalsIgnoreCase("en_us")) {
-                    DownloadHelper.copyEnglish(localeFile);
+                            @Nonnull String fallbackLanguage, @Nonnull File cacheDir) throws IOException {
+        LangConfig config = new LangConfig(version, localeList, fallbackLanguage, Collections.emptyMap(),
+                Collections.emptyList(), Collections.emptyList(), cacheDir, null, false, 4, 0, 0,
+                30 * 60 * 1000, false, false, false, false);
+        init(logger, config).join();
+    }
+
+    /**
+     * Load en_us synchronously and publish it, then load every other locale on the loader pool and publish each one
+     * as soon as it is ready.
+     *
+     * @return the future returned by {@link #getReadyFuture()}, completed once every locale has been tried
+     */
+    @Nonnull
+    public static CompletableFuture<Void> init(@Nonnull Logger logger, @Nonnull LangConfig config) {
+        LocaleLoader loader = new LocaleLoader(logger, config);
+        Map<String, LocaleMap> localeMaps = new HashMap<>();
+        if (requiredLocales(config).contains(LocaleLoader.ENGLISH)) {
+            localeMaps.put(LocaleLoader.ENGLISH, loader.englishMap);
+        }
+        replace(new Snapshot(loader, localeMaps));
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String locale : requiredLocales(config)) {
+            if (locale.equals(LocaleLoader.ENGLISH)) { continue; }
+            futures.add(loader.loadAsync(locale)
+                    .thenAccept(localeMap -> publish(loader, locale, localeMap))
+                    .exceptionally(e -> {
+                        logger.log(Level.SEVERE, "Fail to load Minecraft lang: " + locale + ".", e);
+                        return null;
+                    }));
+        }
+        if (READY_FUTURE.isDone()) {
+            // initialized again without a shutdown, the previous future must not report this load as done
+            READY_FUTURE = new CompletableFuture<>();
+        }
+        CompletableFuture<Void> readyFuture = READY_FUTURE;
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .whenComplete((unused, e) -> readyFuture.complete(null));
+        return readyFuture;
+    }
+
+    /**
+     * Build a complete registry from {@code config} off-thread while the current one keeps serving lookups, then
+     * publish it in a single write.
+     *
+     * @return a future completed once the new registry is published, or failed if it could not be built or another
+     * reload is still running
+     */
+    @Nonnull
+    public static CompletableFuture<Void> reload(@Nonnull Logger logger, @Nonnull LangConfig config) {
+        if (!RELOADING.compareAndSet(false, true)) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("A reload is already running."));
+            return future;
+        }
+        return CompletableFuture.supplyAsync(() -> new LocaleLoader(logger, config)).thenCompose(loader -> {
+            Map<String, LocaleMap> localeMaps = new ConcurrentHashMap<>();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (String locale : requiredLocales(config)) {
+                futures.add(loader.loadAsync(locale).thenAccept(localeMap -> localeMaps.put(locale, localeMap)));
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((unused, e) -> {
+                if (e != null) {
+                    loader.shutdown();
                 } else {
-                    if (assertIndex == null) {
-                        logger.info("Fetch Minecraft asset index: " + version + ".");
-                        assertIndex = DownloadHelper.fetchAssertIndex(version);
-                    }
-                    logger.info("Download Minecraft lang: " + locale + ".");
-                    DownloadHelper.downloadLang(assertIndex, locale, localeFile);
+                    replace(new Snapshot(loader, new HashMap<>(localeMaps)));
+                }
+            });
+        }).whenComplete((unused, e) -> RELOADING.set(false));
+    }
+
+    @Nonnull
+    private static Set<String> requiredLocales(@Nonnull LangConfig config) {
+        // the fallback goes first so that it is ready as early as possible
+        Set<String> locales = new LinkedHashSet<>();
+        locales.add(config.getFallbackLanguage());
+        locales.addAll(config.getLoadLanguages());
+        return locales;
+    }
+
+    private static void replace(@Nonnull Snapshot snapshot) {
+        Snapshot previous = SNAPSHOT.getAndSet(snapshot);
+        if (previous != null && previous.loader != snapshot.loader) {
+            previous.loader.shutdown();
+            // resolve every player again now, so that idle players do not keep the maps of the old loader alive
+            PLAYER_LOCALES.replaceAll((uuid, playerLocale) -> new PlayerLocale(playerLocale.locale, snapshot));
+        }
+    }
+
+    private static void publish(@Nonnull LocaleLoader loader, @Nonnull String locale, @Nonnull LocaleMap localeMap) {
+        localeMap.touch(CLOCK);
+        SNAPSHOT.updateAndGet(snapshot -> snapshot != null && snapshot.loader == loader
+                ? snapshot.with(locale, localeMap) : snapshot);
+    }
+
+    /**
+     * @return a future completed once {@link #init} has finished loading every configured locale. Until then,
+     * lookups for locales that are still loading return the fallback language.
+     */
+    @Nonnull
+    public static CompletableFuture<Void> getReadyFuture() {
+        return READY_FUTURE;
+    }
+
+    /**
+     * @return the trace of the loader behind the current registry
+     */
+    @Nonnull
+    static StartupTrace getStartupTrace() {
+        return Objects.requireNonNull(SNAPSHOT.get(), "LangRegistry is not initialized.").loader.trace;
+    }
+
+    /**
+     * Estimate the heap retained by every loaded locale by walking the registry, which takes a few milliseconds per
+     * locale. Call it off the main thread.
+     */
+    @Nonnull
+    public static MemoryReport getMemoryReport() {
+        Snapshot snapshot = Objects.requireNonNull(SNAPSHOT.get(), "LangRegistry is not initialized.");
+        Set<LocaleMap> localeMaps = Collections.newSetFromMap(new IdentityHashMap<>());
+        localeMaps.addAll(snapshot.localeMaps.values());
+        // en_us from the server jar stays resident while it serves as fallback
+        localeMaps.add(snapshot.fallbackMap);
+        return MemoryReport.measure(snapshot.loader, localeMaps);
+    }
+
+    /**
+     * Unload languages loaded on demand, least recently used first, while the registry is over the budget of its
+     * config. A language is only unloaded once it has gone without lookups for the configured idle time and no
+     * online player uses it. The fallback language and those listed in the config are never unloaded, and a language
+     * other loaded languages are stored as overlays on only after them. An unloaded language is loaded again from its
+     * compiled cache the next time it is looked up.
+     * <p>
+     * Meant to run periodically off the main thread: each run also advances the clock the last-access times are
+     * recorded with, so their precision is the period of the calls. Lookups are never blocked.
+     *
+     * @return the languages unloaded
+     */
+    @Nonnull
+    public static List<String> evictIdleLocales() {
+        long now = System.currentTimeMillis();
+        CLOCK = now;
+        Snapshot snapshot = SNAPSHOT.get();
+        if (snapshot == null) { return Collections.emptyList(); }
+        LangConfig config = snapshot.loader.config;
+        int maxLocales = config.getMaxLoadedLanguages();
+        long maxMemory = config.getMaxLanguageMemory();
+        if (maxLocales == 0 && maxMemory == 0) { return Collections.emptyList(); }
+
+        Set<String> pinned = requiredLocales(config);
+        pinned.add(LocaleLoader.ENGLISH);
+        for (PlayerLocale playerLocale : PLAYER_LOCALES.values()) {
+            pinned.add(playerLocale.locale);
+        }
+        List<Map.Entry<String, LocaleMap>> candidates = new ArrayList<>();
+        for (Map.Entry<String, LocaleMap> entry : snapshot.localeMaps.entrySet()) {
+            if (!pinned.contains(entry.getKey())
+                    && now - entry.getValue().getLastAccess() >= config.getEvictIdleMillis()) {
+                candidates.add(entry);
+            }
+        }
+        if (candidates.isEmpty()) { return Collections.emptyList(); }
+        candidates.sort(Comparator.comparingLong(entry -> entry.getValue().getLastAccess()));
+
+        int loaded = snapshot.localeMaps.size();
+        // the locales that stay loaded, whose strings evicting a locale does not free
+        Set<LocaleMap> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+        remaining.addAll(snapshot.localeMaps.values());
+        remaining.add(snapshot.fallbackMap);
+        long memory = 0;
+        if (maxMemory > 0) {
+            // every object once, however many locales share it
+            MemoryEstimator estimator = new MemoryEstimator();
+            for (LocaleMap localeMap : snapshot.localeMaps.values()) {
+                memory += localeMap.estimateFootprint(estimator).getTotalBytes();
+            }
+        }
+        // bases of loaded overlays stay reachable through them, so unloading one frees nothing until they are gone
+        Map<LocaleMap, Integer> baseUsers = new IdentityHashMap<>();
+        for (LocaleMap localeMap : snapshot.localeMaps.values()) {
+            LocaleMap base = localeMap.getOverlayBase();
+            if (base != null) {
+                baseUsers.merge(base, 1, Integer::sum);
+            }
+        }
+        List<String> evicted = new ArrayList<>();
+        // another pass only helps if unloading an overlay freed a base skipped before
+        boolean freedBase = true;
+        passes:
+        while (freedBase) {
+            freedBase = false;
+            for (Iterator<Map.Entry<String, LocaleMap>> it = candidates.iterator(); it.hasNext(); ) {
+                boolean overCount = maxLocales > 0 && loaded > maxLocales;
+                boolean overMemory = maxMemory > 0 && memory > maxMemory;
+                if (!overCount && !overMemory) { break passes; }
+                Map.Entry<String, LocaleMap> candidate = it.next();
+                LocaleMap localeMap = candidate.getValue();
+                if (baseUsers.containsKey(localeMap)) { continue; }
+                it.remove();
+                remaining.remove(localeMap);
+                // measured before unloading, while the pool still holds the strings only this locale uses
+                long freed = maxMemory > 0 ? unsharedBytes(localeMap, remaining) : 0;
+                if (!evict(snapshot.loader, candidate.getKey(), localeMap)) {
+                    remaining.add(localeMap);
+                    continue;
+                }
+                evicted.add(candidate.getKey());
+                loaded--;
+                memory -= freed;
+                LocaleMap base = localeMap.getOverlayBase();
+                if (base != null) {
+                    freedBase |= baseUsers.computeIfPresent(base, (b, users) -> users > 1 ? users - 1 : null) == null;
                 }
+                snapshot.loader.logger.info("Unloaded idle Minecraft lang: " + candidate.getKey() + ".");
             }
+        }
+        if (!evicted.isEmpty()) {
+            // otherwise DeduplicateStrings would keep every string of the unloaded locales reachable
+            snapshot.loader.prunePool(remaining);
+        }
+        return evicted;
+    }
 
-            try (BufferedReader reader = Files.newBufferedReader(localeFile.toPath(), StandardCharsets.UTF_8)) {
-                JsonObject localeMapJson = gson.fromJson(reader, JsonObject.class);
-                LOADED_LOCALE_MAPS.put(locale, new LocaleMap(locale, localeMapJson));
-            } catch (IOException e) {
-                throw new IllegalArgumentException("Failed to parse language file: " + localeFile.getName(), e);
+    /**
+     * @return the estimated bytes unloading {@code localeMap} frees: what it holds that none of {@code remaining},
+     * nor their overlay bases, shares
+     */
+    private static long unsharedBytes(@Nonnull LocaleMap localeMap, @Nonnull Collection<LocaleMap> remaining) {
+        MemoryEstimator estimator = new MemoryEstimator();
+        for (LocaleMap other : remaining) {
+            other.estimateFootprint(estimator);
+            LocaleMap base = other.getOverlayBase();
+            if (base != null) {
+                base.estimateFootprint(estimator);
             }
         }
+        return localeMap.estimateFootprint(estimator).getTotalBytes();
+    }
+
+    /**
+     * @return whether {@code localeMap} was still published and has been removed
+     */
+    private static boolean evict(@Nonnull LocaleLoader loader, @Nonnull String locale,
+                                 @Nonnull LocaleMap localeMap) {
+        boolean[] removed = new boolean[1];
+        SNAPSHOT.updateAndGet(snapshot -> {
+            removed[0] = snapshot != null && snapshot.loader == loader && snapshot.localeMaps.get(locale) == localeMap;
+            return removed[0] ? snapshot.without(locale) : snapshot;
+        });
+        if (removed[0]) {
+            // only once it is unpublished, so that a lookup in between cannot schedule a load that is then dropped
+            loader.forget(locale);
+        }
+        return removed[0];
+    }
+
+    public static void shutdown() {
+        Snapshot snapshot = SNAPSHOT.get();
+        if (snapshot != null) {
+            snapshot.loader.shutdown();
+        }
+        if (READY_FUTURE.isDone()) {
+            READY_FUTURE = new CompletableFuture<>();
+        }
+        PLAYER_LOCALES.clear();
     }
 
     @Nonnull
     public static LocaleMap getLocaleMap(@Nonnull String locale) {
+        Snapshot snapshot = Objects.requireNonNull(SNAPSHOT.get(), "LangRegistry is not initialized.");
+        locale = standardizeLocale(locale);
+        return recordLookup(locale, getLocaleMap(snapshot, locale));
+    }
+
+    /**
+     * Resolve the locale map of an online player. The result is cached per player until the player changes locale or
+     * the registry changes, so repeated calls neither read nor normalize {@link Player#getLocale()}.
+     */
+    @Nonnull
+    public static LocaleMap getLocaleMap(@Nonnull Player player) {
+        Snapshot snapshot = Objects.requireNonNull(SNAPSHOT.get(), "LangRegistry is not initialized.");
+        UUID uuid = player.getUniqueId();
+        PlayerLocale playerLocale = PLAYER_LOCALES.get(uuid);
+        if (playerLocale == null) {
+            // not tracked by PlayerLocaleListener, e.g. a fake player: resolve without caching
+            String locale = standardizeLocale(player.getLocale());
+            return recordLookup(locale, getLocaleMap(snapshot, locale));
+        }
+        if (playerLocale.generation != snapshot.generation) {
+            PlayerLocale resolved = new PlayerLocale(playerLocale.locale, snapshot);
+            PLAYER_LOCALES.replace(uuid, playerLocale, resolved);
+            playerLocale = resolved;
+        }
+        return recordLookup(playerLocale.locale, playerLocale.localeMap);
+    }
+
+    @Nonnull
+    private static LocaleMap recordLookup(@Nonnull String locale, @Nonnull LocaleMap localeMap) {
+        localeMap.touch(CLOCK);
+        LookupStats.recordLookup(locale, !locale.equals(localeMap.getLocale()));
+        return localeMap;
+    }
+
+    static void updatePlayerLocale(@Nonnull UUID uuid, @Nonnull String locale) {
+        Snapshot snapshot = SNAPSHOT.get();
+        if (snapshot == null) { return; }
         locale = standardizeLocale(locale);
-        LocaleMap ret = LOADED_LOCALE_MAPS.get(locale);
+        PLAYER_LOCALES.put(uuid, new PlayerLocale(locale, snapshot));
+    }
+
+    static void removePlayerLocale(@Nonnull UUID uuid) {
+        PLAYER_LOCALES.remove(uuid);
+    }
+
+    @Nonnull
+    private static LocaleMap getLocaleMap(@Nonnull Snapshot snapshot, @Nonnull String locale) {
+        LocaleMap ret = snapshot.localeMaps.get(locale);
         if (ret == null) {
-            ret = Objects.requireNonNull(LOADED_LOCALE_MAPS.get(FALLBACK_LANGUAGE),
-                    "Fallback language not found: " + FALLBACK_LANGUAGE);
+            if (snapshot.loader.config.isLazyLoad()) {
+                requestLoad(snapshot.loader, locale);
+            }
+            ret = snapshot.fallbackMap;
         }
         return ret;
     }
 
+    private static void requestLoad(@Nonnull LocaleLoader loader, @Nonnull String locale) {
+        CompletableFuture<LocaleMap> future = loader.requestLoad(locale);
+        if (future == null) { return; }
+        future.thenAccept(localeMap -> {
+            if (localeMap != null) {
+                publish(loader, locale, localeMap);
+                loader.logger.info("Lazily loaded Minecraft lang: " + locale + ".");
+            }
+        });
+    }
+
 }
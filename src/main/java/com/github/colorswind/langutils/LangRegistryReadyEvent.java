@@ -0,0 +1,24 @@
+package com.github.colorswind.langutils;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Called on the main thread once {@link LangRegistry} has finished loading every configured language.
+ */
+public class LangRegistryReadyEvent extends Event {
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    @Nonnull
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    @Nonnull
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
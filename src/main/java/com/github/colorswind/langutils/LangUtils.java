@@ -1,25 +1,83 @@
 package com.github.colorswind.langutils;
 
 import org.bstats.bukkit.Metrics;
+import org.bstats.charts.AdvancedPie;
+import org.bstats.charts.SingleLineChart;
 import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import javax.annotation.Nonnull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
 
 public final class LangUtils extends JavaPlugin {
     public static final int PLUGIN_ID = 23307;
+    private static final List<String> SUBCOMMANDS = Arrays.asList("reload", "stats", "memory");
+    private static final int STATS_LIMIT = 10;
+    // ticks between runs of the eviction of idle languages, which also sets the precision of their last access
+    private static final long EVICTION_PERIOD = 60 * 20;
     private Metrics metrics = null;
+    // totals at the last bStats submission, whose line charts expect the count per interval
+    private long reportedFallbackHits = 0;
+    private long reportedMisses = 0;
 
     @Override
     public void onEnable() {
+        LangConfig langConfig = loadLangConfig();
+        LangRegistry.init(getLogger(), langConfig).thenRun(() -> {
+            if (!isEnabled()) { return; }
+            Bukkit.getScheduler().runTask(this,
+                    () -> Bukkit.getPluginManager().callEvent(new LangRegistryReadyEvent()));
+            Bukkit.getScheduler().runTaskAsynchronously(this, () -> testLanguages(langConfig)
+                    .whenComplete((unused, e) -> reportStartup(langConfig)));
+        });
+        Bukkit.getPluginManager().registerEvents(new PlayerLocaleListener(), this);
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this, LangRegistry::evictIdleLocales, EVICTION_PERIOD,
+                EVICTION_PERIOD);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            LangRegistry.updatePlayerLocale(player.getUniqueId(), player.getLocale());
+        }
+        metrics = new Metrics(this, PLUGIN_ID);
+        addCustomCharts(metrics);
+    }
+
+    private void addCustomCharts(@Nonnull Metrics metrics) {
+        metrics.addCustomChart(new AdvancedPie("locale_lookups", () -> {
+            Map<String, Integer> lookups = new HashMap<>();
+            for (Map.Entry<String, Long> entry : LookupStats.getLocaleLookups().entrySet()) {
+                lookups.put(entry.getKey(), (int) Math.min(Integer.MAX_VALUE, entry.getValue()));
+            }
+            return lookups;
+        }));
+        metrics.addCustomChart(new SingleLineChart("fallback_hits", () -> {
+            long fallbackHits = LookupStats.getFallbackHits();
+            long delta = fallbackHits - reportedFallbackHits;
+            reportedFallbackHits = fallbackHits;
+            return (int) Math.min(Integer.MAX_VALUE, delta);
+        }));
+        metrics.addCustomChart(new SingleLineChart("translation_misses", () -> {
+            long misses = LookupStats.getMisses();
+            long delta = misses - reportedMisses;
+            reportedMisses = misses;
+            return (int) Math.min(Integer.MAX_VALUE, delta);
+        }));
+    }
+
+    @Nonnull
+    private LangConfig loadLangConfig() {
         if (!getDataFolder().exists() && !getDataFolder().mkdir()) {
             throw new IllegalArgumentException("Fail to create data folder.");
         }
@@ -28,51 +86,161 @@ public final class LangUtils extends JavaPlugin {
             saveResource("config.yml", false);
         }
         FileConfiguration config = YamlConfiguration.loadConfiguration(file);
-        DownloadHelper.VERSION_MANIFEST_URL = Objects.requireNonNull(config.getString("VersionManifestUrl"));
-        DownloadHelper.RESOURCES_URL = Objects.requireNonNull(config.getString("ResourcesUrl"));
-        List<String> loadLanguages = Objects.requireNonNull(config.getStringList("LoadLanguage"));
-        String minecraftVersion = Objects.requireNonNull(config.getString("MinecraftVersion"));
-        if (minecraftVersion.equalsIgnoreCase("auto")) {
-            String regex = "(?<=MC: )\\d+\\.\\d+\\.\\d+";
-            Pattern pattern = Pattern.compile(regex);
-            Matcher matcher = pattern.matcher(Bukkit.getVersion());
-            if (matcher.find()) {
-                minecraftVersion = matcher.group();
-                getLogger().info("Detect Minecraft version: " + minecraftVersion + ".");
-            } else {
-                getLogger().severe("Fail to detect Minecraft version, please set in config.yml.");
-                throw new IllegalArgumentException("Unknown minecraft version.");
+        return LangConfig.load(config, getDataFolder(), getLogger());
+    }
+
+    @Nonnull
+    private CompletableFuture<Void> testLanguages(@Nonnull LangConfig langConfig) {
+        if (!langConfig.isDumpLanguages()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<LocaleMap> localeMaps = new ArrayList<>();
+        for (String locale : langConfig.getLoadLanguages()) {
+            LocaleMap localeMap = LangRegistry.getLocaleMap(locale);
+            // a locale that failed to load resolves to the fallback language, which is dumped under its own name
+            if (localeMap.getLocale().equals(locale)) {
+                localeMaps.add(localeMap);
             }
         }
-        String fallbackLanguage = Objects.requireNonNull(config.getString("FallbackLanguage"));
-        File cacheDir = new File(new File(getDataFolder(), "cache"), minecraftVersion);
+        return LanguageDumper.dumpAll(localeMaps, langConfig.getCacheDir(),
+                runnable -> Bukkit.getScheduler().runTaskAsynchronously(this, runnable), getLogger(),
+                LangRegistry.getStartupTrace());
+    }
 
-        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
-            throw new IllegalArgumentException("Fail to create cache directory: " + cacheDir.getAbsolutePath());
-        }
+    private void reportStartup(@Nonnull LangConfig langConfig) {
+        StartupTrace trace = LangRegistry.getStartupTrace();
+        trace.freeze();
+        trace.log(getLogger());
+        if (!langConfig.isWriteStartupTrace()) { return; }
+        File file = new File(getDataFolder(), "startup-trace.json");
         try {
-            LangRegistry.init(getLogger(), minecraftVersion, loadLanguages, fallbackLanguage, cacheDir);
+            trace.write(file, getDescription().getVersion(), langConfig.getMinecraftVersion());
         } catch (IOException e) {
-            getLogger().severe("Fail to init LangRegistry.");
-            throw new RuntimeException(e);
+            getLogger().log(Level.WARNING, "Fail to write " + file.getName() + ".", e);
         }
-        for (String locale : loadLanguages) {
-            File localeCacheDir = new File(cacheDir, locale);
-            LocaleMap localeMap = LangRegistry.getLocaleMap(locale);
-            try {
-                localeMap.testMaterial(new File(localeCacheDir, "material.yml"), getLogger());
-                localeMap.testEntityType(new File(localeCacheDir, "entity-type.yml"), getLogger());
-                localeMap.testBiome(new File(localeCacheDir, "biome.yml"), getLogger());
-                localeMap.testEnchantment(new File(localeCacheDir, "enchant.yml"), getLogger());
-            } catch (Exception e) {
-                throw new RuntimeException("Fail to test lang: " + locale, e);
+    }
+
+    @Override
+    public boolean onCommand(@Nonnull CommandSender sender, @Nonnull Command command, @Nonnull String label,
+                             @Nonnull String[] args) {
+        if (args.length == 1 && args[0].equalsIgnoreCase("reload")) {
+            reload(sender);
+            return true;
+        }
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            sendStats(sender);
+            return true;
+        }
+        if (args.length == 1 && args[0].equalsIgnoreCase("memory")) {
+            sendMemory(sender);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public List<String> onTabComplete(@Nonnull CommandSender sender, @Nonnull Command command, @Nonnull String alias,
+                                      @Nonnull String[] args) {
+        List<String> completions = new ArrayList<>();
+        if (args.length == 1) {
+            for (String subcommand : SUBCOMMANDS) {
+                if (subcommand.startsWith(args[0].toLowerCase())) {
+                    completions.add(subcommand);
+                }
             }
         }
-        metrics = new Metrics(this, PLUGIN_ID);
+        return completions;
+    }
+
+    private void reload(@Nonnull CommandSender sender) {
+        LangConfig langConfig;
+        try {
+            langConfig = loadLangConfig();
+        } catch (Exception e) {
+            getLogger().log(Level.SEVERE, "Fail to read config.yml.", e);
+            sender.sendMessage("Fail to read config.yml: " + e.getMessage());
+            return;
+        }
+        sender.sendMessage("Reloading languages...");
+        long start = System.currentTimeMillis();
+        LangRegistry.reload(getLogger(), langConfig).whenComplete((unused, e) -> {
+            if (!isEnabled()) { return; }
+            Bukkit.getScheduler().runTask(this, () -> {
+                if (e != null) {
+                    getLogger().log(Level.SEVERE, "Fail to reload languages.", e);
+                    sender.sendMessage("Fail to reload languages: " + e.getMessage());
+                } else {
+                    sender.sendMessage("Reloaded languages in " + (System.currentTimeMillis() - start) + " ms.");
+                }
+            });
+            if (e == null) {
+                Bukkit.getScheduler().runTaskAsynchronously(this, () -> testLanguages(langConfig)
+                        .whenComplete((dumped, dumpError) -> LangRegistry.getStartupTrace().freeze()));
+            }
+        });
+    }
+
+    private void sendStats(@Nonnull CommandSender sender) {
+        long samples = LookupStats.getLatencySamples();
+        sender.sendMessage("Translations: " + LookupStats.getTranslations() + ", missing keys: "
+                + LookupStats.getMisses());
+        sender.sendMessage("Sampled latency (1/" + LookupStats.SAMPLE_RATE + ", " + samples + " samples): avg "
+                + (samples > 0 ? LookupStats.getLatencyTotalNanos() / samples : 0) + " ns, p50 <= "
+                + LookupStats.getLatencyPercentileNanos(50) + " ns, p99 <= "
+                + LookupStats.getLatencyPercentileNanos(99) + " ns, max " + LookupStats.getLatencyMaxNanos() + " ns");
+        Map<String, Long> lookups = LookupStats.getLocaleLookups();
+        long totalLookups = 0;
+        for (long count : lookups.values()) {
+            totalLookups += count;
+        }
+        sender.sendMessage("Locale lookups: " + totalLookups + ", served by fallback: "
+                + LookupStats.getFallbackHits());
+        int shown = 0;
+        for (Map.Entry<String, Long> entry : lookups.entrySet()) {
+            if (shown++ >= STATS_LIMIT) { break; }
+            sender.sendMessage("  " + entry.getKey() + ": " + entry.getValue());
+        }
+        Map<String, Long> missingKeys = LookupStats.getTopMissingKeys(STATS_LIMIT);
+        if (!missingKeys.isEmpty()) {
+            sender.sendMessage("Most missed keys:");
+            for (Map.Entry<String, Long> entry : missingKeys.entrySet()) {
+                sender.sendMessage("  " + entry.getKey() + ": " + entry.getValue());
+            }
+        }
+    }
+
+    private void sendMemory(@Nonnull CommandSender sender) {
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            MemoryReport report = LangRegistry.getMemoryReport();
+            Bukkit.getScheduler().runTask(this, () -> {
+                sender.sendMessage("Estimated memory of " + report.getLocales().size() + " languages: "
+                        + formatBytes(report.getTotalBytes()) + ", of which shared by all: "
+                        + formatBytes(report.getSharedBytes()));
+                for (MemoryReport.LocaleFootprint locale : report.getLocales()) {
+                    sender.sendMessage("  " + locale.getLocale() + ": " + formatBytes(locale.getTotalBytes())
+                            + " (" + locale.getEntries() + " entries, values " + formatBytes(locale.getValueBytes())
+                            + ", templates " + formatBytes(locale.getTemplateBytes()) + ", caches "
+                            + formatBytes(locale.getCacheBytes()) + ")");
+                }
+                sender.sendMessage("Values found in several languages: " + report.getDuplicatedValues()
+                        + ", separate copies: " + report.getDuplicatedCopies() + " ("
+                        + formatBytes(report.getDuplicatedCopyBytes()) + ")");
+            });
+        });
+    }
+
+    @Nonnull
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        return bytes < 1024 * 1024 ? String.format("%.1f KiB", bytes / 1024.0)
+                : String.format("%.1f MiB", bytes / (1024.0 * 1024));
     }
 
     @Override
     public void onDisable() {
+        LangRegistry.shutdown();
         metrics.shutdown();
     }
 }
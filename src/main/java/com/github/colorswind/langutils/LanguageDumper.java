@@ -0,0 +1,230 @@
+package com.github.colorswind.langutils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.EntityType;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the name of every material, entity type, biome and enchantment of a locale to YAML files, so that missing
+ * or wrong names can be spotted by hand.
+ */
+final class LanguageDumper {
+    // next to the dumps of a locale, records the inputs each dump was rendered from
+    private static final String STAMP_FILE = "dump.properties";
+
+    enum Category {
+        MATERIAL("material.yml") {
+            @Override
+            void forEach(@Nonnull LocaleMap localeMap, @Nonnull BiConsumer<String, String> consumer) {
+                for (Material material : Material.values()) {
+                    consumer.accept(material.name(), localeMap.getMaterialName(material));
+                }
+            }
+        },
+        ENTITY_TYPE("entity-type.yml") {
+            @Override
+            void forEach(@Nonnull LocaleMap localeMap, @Nonnull BiConsumer<String, String> consumer) {
+                for (EntityType entityType : EntityType.values()) {
+                    if (entityType == EntityType.UNKNOWN) { continue; }
+                    consumer.accept(entityType.name(), localeMap.getEntityTypeName(entityType));
+                }
+            }
+        },
+        BIOME("biome.yml") {
+            @Override
+            void forEach(@Nonnull LocaleMap localeMap, @Nonnull BiConsumer<String, String> consumer) {
+                for (Biome biome : Biome.values()) {
+                    consumer.accept(biome.getKey().toString(), localeMap.getBiomeName(biome));
+                }
+            }
+        },
+        ENCHANTMENT("enchant.yml") {
+            @Override
+            void forEach(@Nonnull LocaleMap localeMap, @Nonnull BiConsumer<String, String> consumer) {
+                for (Enchantment enchantment : Enchantment.values()) {
+                    consumer.accept(enchantment.getKey().toString(), localeMap.getEnchantmentName(enchantment));
+                }
+            }
+        };
+
+        private final String fileName;
+
+        Category(@Nonnull String fileName) {
+            this.fileName = fileName;
+        }
+
+        abstract void forEach(@Nonnull LocaleMap localeMap, @Nonnull BiConsumer<String, String> consumer);
+    }
+
+    private LanguageDumper() {
+    }
+
+    /**
+     * Dump every category of every locale on {@code executor}, one task per locale and category. A dump is only
+     * rewritten when the server version or the content of its locale changed since it was written.
+     *
+     * @return a future completed once every dump is up to date. Failures are logged, not propagated.
+     */
+    @Nonnull
+    static CompletableFuture<Void> dumpAll(@Nonnull Collection<LocaleMap> localeMaps, @Nonnull File cacheDir,
+                                          @Nonnull Executor executor, @Nonnull Logger logger,
+                                          @Nonnull StartupTrace trace) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (LocaleMap localeMap : localeMaps) {
+            File localeDir = new File(cacheDir, localeMap.getLocale());
+            if (!localeDir.isDirectory() && !localeDir.mkdirs()) {
+                logger.severe("Fail to create dump directory: " + localeDir.getAbsolutePath());
+                continue;
+            }
+            Properties stamps = readStamps(localeDir);
+            String stamp = stamp(localeMap);
+            List<CompletableFuture<Void>> localeFutures = new ArrayList<>();
+            for (Category category : Category.values()) {
+                File file = new File(localeDir, category.fileName);
+                if (file.isFile() && stamp.equals(stamps.getProperty(category.fileName))) { continue; }
+                localeFutures.add(CompletableFuture.runAsync(() -> {
+                    try (StartupTrace.Span ignored = trace.start("dump", localeMap.getLocale())) {
+                        logger.info("Dump " + localeMap.getLocale() + " " + category.fileName + ".");
+                        dump(localeMap, category, file);
+                        synchronized (stamps) {
+                            stamps.setProperty(category.fileName, stamp);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        logger.log(Level.SEVERE, "Fail to dump lang: " + localeMap.getLocale() + ".", e);
+                    }
+                }, executor));
+            }
+            if (localeFutures.isEmpty()) { continue; }
+            futures.add(CompletableFuture.allOf(localeFutures.toArray(new CompletableFuture[0])).thenRun(() -> {
+                synchronized (stamps) {
+                    writeStamps(localeDir, stamps, logger);
+                }
+            }));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Write the names of {@code category} to {@code file} one entry at a time, without building a configuration in
+     * memory. The file replaces the previous one only once it is complete.
+     */
+    static void dump(@Nonnull LocaleMap localeMap, @Nonnull Category category, @Nonnull File file)
+            throws IOException {
+        // unique per dump, since a reload may dump the same locale while the startup dumps still run
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                IOException[] error = new IOException[1];
+                category.forEach(localeMap, (key, value) -> {
+                    if (error[0] != null) { return; }
+                    try {
+                        writer.write(quote(key));
+                        writer.write(": ");
+                        writer.write(quote(value));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                });
+                if (error[0] != null) {
+                    throw error[0];
+                }
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @return {@code value} as a double-quoted YAML scalar
+     */
+    @Nonnull
+    private static String quote(@Nonnull String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x7F) {
+                        builder.append(String.format("\\x%02X", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * @return what a dump of {@code localeMap} depends on: the server version, which decides the names dumped, and
+     * the translations, which already include the fallback languages merged into them
+     */
+    @Nonnull
+    private static String stamp(@Nonnull LocaleMap localeMap) {
+        return Bukkit.getBukkitVersion() + "/" + Long.toHexString(localeMap.contentHash());
+    }
+
+    @Nonnull
+    private static Properties readStamps(@Nonnull File localeDir) {
+        Properties stamps = new Properties();
+        File stampFile = new File(localeDir, STAMP_FILE);
+        if (stampFile.isFile()) {
+            try (InputStream is = Files.newInputStream(stampFile.toPath())) {
+                stamps.load(is);
+            } catch (IOException ignored) {
+                stamps.clear();
+            }
+        }
+        return stamps;
+    }
+
+    private static void writeStamps(@Nonnull File localeDir, @Nonnull Properties stamps, @Nonnull Logger logger) {
+        try (OutputStream os = Files.newOutputStream(new File(localeDir, STAMP_FILE).toPath())) {
+            stamps.store(os, null);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Fail to save dump stamps of " + localeDir.getName() + ".", e);
+        }
+    }
+}
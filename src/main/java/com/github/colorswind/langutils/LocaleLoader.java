@@ -0,0 +1,424 @@
+package com.github.colorswind.langutils;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Loads the languages of one {@link LangConfig}. Every registry snapshot built from the same config shares its
+ * loader, and with it the key index, the worker pool and the string pool.
+ */
+final class LocaleLoader {
+    static final String ENGLISH = "en_us";
+    private static final Pattern LOCALE_PATTERN = Pattern.compile("[a-z0-9_]{2,16}");
+    // with overlays enabled, a language is stored as overlay on a loaded one sharing at least this share of values
+    private static final double MIN_OVERLAY_SHARE = 0.75;
+    // a locale whose lazy load failed, e.g. because the download did, is requested again after this delay
+    private static final long RETRY_DELAY_MILLIS = 60_000;
+
+    final Logger logger;
+    final LangConfig config;
+    final StartupTrace trace = new StartupTrace();
+    // keys outside the filter are dropped while reading, so en_us and with it the key index only hold the others
+    private final KeyFilter keyFilter;
+    final KeyIndex keyIndex;
+    // en_us from the server jar, used until the configured fallback language has been loaded
+    final LocaleMap englishMap;
+    private final ExecutorService executor;
+    // canonical instances of values seen in any locale, null if de-duplication is disabled
+    private final Map<String, String> stringPool;
+    // locales already handed to the lazy loader, loading, loaded or unknown to Minecraft
+    private final Set<String> requestedLocales = ConcurrentHashMap.newKeySet();
+    // time the last lazy load of a locale failed at, for those that may be retried
+    private final Map<String, Long> failedLoads = new ConcurrentHashMap<>();
+    // values read from each language file before fallbacks are merged in, shared by the loads in progress whose
+    // chain holds them and dropped once the last of those completes, except en_us which englishMap holds anyway
+    private final Map<String, CompletableFuture<String[]>> columns = new ConcurrentHashMap<>();
+    // number of loads in progress using each column, guarded by itself
+    private final Map<String, Integer> columnUsers = new HashMap<>();
+    // languages stored in full, which languages loaded later may be stored as overlays on
+    private final Map<String, LocaleMap> overlayBases = new ConcurrentHashMap<>();
+    private JsonObject assertIndex = null;
+
+    LocaleLoader(@Nonnull Logger logger, @Nonnull LangConfig config) {
+        this.logger = logger;
+        this.config = config;
+        this.stringPool = config.isDeduplicateStrings() ? new ConcurrentHashMap<>() : null;
+        this.keyFilter = new KeyFilter(config.getIncludeKeys(), config.getExcludeKeys(), logger);
+        // en_us ships with the server and holds every key, so its keys that pass the filter define the key index
+        // shared by all locales
+        File englishFile = new File(config.getCacheDir(), ENGLISH + ".json");
+        if (!englishFile.exists()) {
+            DownloadHelper.copyEnglish(englishFile);
+        }
+        List<String> englishKeys = new ArrayList<>();
+        List<String> englishValues = new ArrayList<>();
+        readEntries(ENGLISH, englishFile, (key, value) -> {
+            englishKeys.add(key);
+            englishValues.add(value);
+        });
+        String[] englishColumn;
+        try (StartupTrace.Span ignored = trace.start("build", ENGLISH)) {
+            this.keyIndex = new KeyIndex(englishKeys, keyFilter);
+            englishColumn = new String[keyIndex.size()];
+            for (int i = 0; i < englishKeys.size(); i++) {
+                englishColumn[keyIndex.indexOf(englishKeys.get(i))] = deduplicate(englishValues.get(i));
+            }
+            this.englishMap = new LocaleMap(ENGLISH, keyIndex, englishColumn);
+        }
+        columns.put(ENGLISH, CompletableFuture.completedFuture(englishColumn));
+        if (config.isOverlayVariants()) {
+            overlayBases.put(ENGLISH, englishMap);
+        }
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(config.getLoaderThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "LangUtils-Loader-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load {@code locale} with the languages of its fallback chain merged into the missing entries, so that a
+     * lookup is a single probe however long the chain is.
+     */
+    @Nonnull
+    CompletableFuture<LocaleMap> loadAsync(@Nonnull String locale) {
+        if (locale.equals(ENGLISH)) {
+            return CompletableFuture.completedFuture(englishMap);
+        }
+        List<String> chain = fallbackChain(locale);
+        List<CompletableFuture<String[]>> chainColumns = new ArrayList<>(chain.size());
+        for (String fallback : chain) {
+            // a language of the chain that fails to load is skipped instead of failing the whole chain
+            chainColumns.add(acquireColumn(fallback).exceptionally(e -> {
+                logger.log(Level.WARNING, "Fail to load fallback lang " + fallback + " of " + locale + ".", e);
+                return null;
+            }));
+        }
+        CompletableFuture<String[]> ownColumn = acquireColumn(locale);
+        List<CompletableFuture<String[]>> all = new ArrayList<>(chainColumns);
+        all.add(ownColumn);
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).thenApply(unused -> {
+            try (StartupTrace.Span ignored = trace.start("build", locale)) {
+                String[] values = ownColumn.join().clone();
+                for (CompletableFuture<String[]> chainColumn : chainColumns) {
+                    String[] fallbackValues = chainColumn.join();
+                    if (fallbackValues == null) { continue; }
+                    for (int id = 0; id < values.length; id++) {
+                        if (values[id] == null) {
+                            values[id] = fallbackValues[id];
+                        }
+                    }
+                }
+                return build(locale, values);
+            }
+        }).whenComplete((localeMap, e) -> {
+            for (String fallback : chain) {
+                releaseColumn(fallback);
+            }
+            releaseColumn(locale);
+        });
+    }
+
+    /**
+     * Store {@code values} as an overlay on the loaded language they share the most values with, if overlays are
+     * enabled and the share is large enough, and in full otherwise.
+     */
+    @Nonnull
+    private LocaleMap build(@Nonnull String locale, @Nonnull String[] values) {
+        if (!config.isOverlayVariants()) {
+            return new LocaleMap(locale, keyIndex, values);
+        }
+        LocaleMap base = null;
+        int baseShared = 0;
+        for (LocaleMap candidate : overlayBases.values()) {
+            int shared = 0;
+            for (int id = 0; id < values.length; id++) {
+                if (Objects.equals(values[id], candidate.valueAt(id))) {
+                    shared++;
+                }
+            }
+            if (shared > baseShared) {
+                base = candidate;
+                baseShared = shared;
+            }
+        }
+        if (base != null && baseShared >= values.length * MIN_OVERLAY_SHARE) {
+            logger.info("Store Minecraft lang " + locale + " as overlay on " + base.getLocale() + ", "
+                    + (values.length - baseShared) + " of " + values.length + " values differ.");
+            return new LocaleMap(locale, keyIndex, values, base);
+        }
+        LocaleMap localeMap = new LocaleMap(locale, keyIndex, values);
+        overlayBases.put(locale, localeMap);
+        return localeMap;
+    }
+
+    /**
+     * @return the languages to look up, in order, when a key is missing in {@code locale}: its configured chain,
+     * then the fallback language, then en_us, which holds every key
+     */
+    @Nonnull
+    private List<String> fallbackChain(@Nonnull String locale) {
+        Set<String> chain = new LinkedHashSet<>();
+        List<String> configured = config.getFallbackChains().get(locale);
+        if (configured != null) {
+            chain.addAll(configured);
+        }
+        chain.add(config.getFallbackLanguage());
+        chain.add(ENGLISH);
+        chain.remove(locale);
+        return new ArrayList<>(chain);
+    }
+
+    /**
+     * @return the column of {@code locale}, read unless a load in progress already uses it; pair with
+     * {@link #releaseColumn(String)}
+     */
+    @Nonnull
+    private CompletableFuture<String[]> acquireColumn(@Nonnull String locale) {
+        synchronized (columnUsers) {
+            if (!locale.equals(ENGLISH)) {
+                columnUsers.merge(locale, 1, Integer::sum);
+            }
+            return columns.computeIfAbsent(locale,
+                    l -> CompletableFuture.supplyAsync(() -> readColumn(l), executor));
+        }
+    }
+
+    private void releaseColumn(@Nonnull String locale) {
+        if (locale.equals(ENGLISH)) { return; }
+        synchronized (columnUsers) {
+            if (columnUsers.computeIfPresent(locale, (l, users) -> users > 1 ? users - 1 : null) == null) {
+                columns.remove(locale);
+            }
+        }
+    }
+
+    /**
+     * Load {@code locale} in the background unless it has been requested before.
+     *
+     * @return the future of the load, or null if nothing was scheduled
+     */
+    @Nullable
+    CompletableFuture<LocaleMap> requestLoad(@Nonnull String locale) {
+        if (!LOCALE_PATTERN.matcher(locale).matches() || requestedLocales.contains(locale)) {
+            return null;
+        }
+        Long failedAt = failedLoads.get(locale);
+        if (failedAt != null && System.currentTimeMillis() - failedAt < RETRY_DELAY_MILLIS) {
+            return null;
+        }
+        if (!requestedLocales.add(locale)) {
+            return null;
+        }
+        try {
+            return loadAsync(locale).exceptionally(e -> {
+                if (isUnknownLanguage(e)) {
+                    // stays requested, so that it is never tried again
+                    logger.warning("Fail to lazily load Minecraft lang: " + locale
+                            + ", it is not a Minecraft language.");
+                } else {
+                    logger.log(Level.WARNING, "Fail to lazily load Minecraft lang: " + locale + ", retry in "
+                            + RETRY_DELAY_MILLIS / 1000 + " s.", e);
+                    failedLoads.put(locale, System.currentTimeMillis());
+                    requestedLocales.remove(locale);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // the pool rejects new work once this loader has been shut down
+            return null;
+        }
+    }
+
+    private static boolean isUnknownLanguage(@Nullable Throwable e) {
+        for (; e != null; e = e.getCause()) {
+            if (e instanceof DownloadHelper.UnknownLanguageException) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Drop what is kept of an unloaded locale, so that the next lazy request reads it again from its compiled cache.
+     */
+    void forget(@Nonnull String locale) {
+        // overlays built on it keep it alive, but new ones should not
+        overlayBases.remove(locale);
+        requestedLocales.remove(locale);
+    }
+
+    /**
+     * Drop the pooled strings that neither {@code loaded}, their overlay bases, en_us nor a load in progress holds
+     * any more, so that unloaded locales can be collected. A string dropped while a load still adds it to the pool
+     * only costs a second copy of it.
+     */
+    void prunePool(@Nonnull Collection<LocaleMap> loaded) {
+        if (stringPool == null) { return; }
+        Set<String> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<LocaleMap> localeMaps = new ArrayList<>(loaded);
+        localeMaps.add(englishMap);
+        for (LocaleMap localeMap : localeMaps) {
+            for (int id = 0; id < keyIndex.size(); id++) {
+                String value = localeMap.valueAt(id);
+                if (value != null) {
+                    live.add(value);
+                }
+            }
+        }
+        for (CompletableFuture<String[]> column : columns.values()) {
+            if (column.isDone() && !column.isCompletedExceptionally()) {
+                Collections.addAll(live, column.join());
+            }
+        }
+        stringPool.values().removeIf(value -> !live.contains(value));
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return the estimated size of the key index, the raw columns of the loads in progress and the string pool,
+     * see {@link MemoryReport}
+     */
+    long estimateBytes(@Nonnull MemoryEstimator estimator) {
+        long size = keyIndex.estimateBytes(estimator);
+        for (CompletableFuture<String[]> column : columns.values()) {
+            // a ConcurrentHashMap node and the completed future holding the column
+            size += MemoryEstimator.object(3, 1, 0) + MemoryEstimator.object(2, 0, 0);
+            if (column.isDone() && !column.isCompletedExceptionally()) {
+                size += estimator.strings(column.join());
+            }
+        }
+        if (stringPool != null) {
+            size += stringPool.size() * MemoryEstimator.object(3, 1, 0)
+                    + MemoryEstimator.referenceArray(Integer.highestOneBit(Math.max(1, stringPool.size())) * 2);
+            for (String value : stringPool.keySet()) {
+                size += estimator.string(value);
+            }
+        }
+        return size;
+    }
+
+    @Nonnull
+    private String[] readColumn(@Nonnull String locale) {
+        File localeFile = new File(config.getCacheDir(), locale + ".json");
+        if (!localeFile.exists()) {
+            JsonObject assertIndex = getAssertIndex();
+            logger.info("Download Minecraft lang: " + locale + ".");
+            try (StartupTrace.Span span = trace.start("download", locale)) {
+                LongAdder downloaded = new LongAdder();
+                DownloadHelper.downloadLang(assertIndex, locale, localeFile, config.getAssetStore(), downloaded);
+                span.downloaded(downloaded.sum());
+            }
+        }
+        String[] values = new String[keyIndex.size()];
+        readEntries(locale, localeFile, (key, value) -> {
+            int id = keyIndex.indexOf(key);
+            if (id >= 0) {
+                values[id] = deduplicate(value);
+            }
+        });
+        return values;
+    }
+
+    @Nonnull
+    private synchronized JsonObject getAssertIndex() {
+        if (assertIndex == null) {
+            logger.info("Fetch Minecraft asset index: " + config.getMinecraftVersion() + ".");
+            try (StartupTrace.Span span = trace.start("asset-index", null)) {
+                LongAdder downloaded = new LongAdder();
+                assertIndex = DownloadHelper.fetchAssertIndex(config.getMinecraftVersion(), config.getCacheDir(),
+                        downloaded);
+                span.downloaded(downloaded.sum());
+            }
+        }
+        return assertIndex;
+    }
+
+    @Nonnull
+    private String deduplicate(@Nonnull String value) {
+        return stringPool != null ? stringPool.computeIfAbsent(value, v -> v) : value;
+    }
+
+    /**
+     * Read the entries of a language file that pass the key filter through its compiled {@code .bin} twin,
+     * compiling it first if it is missing or was built from a different version of the json. The twin holds every
+     * entry, so changing the filter does not recompile it.
+     */
+    private void readEntries(@Nonnull String locale, @Nonnull File jsonFile,
+                             @Nonnull BiConsumer<String, String> consumer) {
+        String name = jsonFile.getName();
+        File binaryFile = new File(jsonFile.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".bin");
+        int[] entries = new int[1];
+        BiConsumer<String, String> counter = (key, value) -> {
+            entries[0]++;
+            consumer.accept(key, value);
+        };
+        byte[] sourceHash;
+        try (StartupTrace.Span span = trace.start("read-bin", locale)) {
+            sourceHash = BinaryLocaleCache.sha1(jsonFile);
+            if (BinaryLocaleCache.read(binaryFile, sourceHash, keyFilter, counter)) {
+                span.parsed(binaryFile.length(), entries[0]);
+                return;
+            }
+            span.discard();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to read language file: " + name, e);
+        }
+
+        // stream the pairs straight to the consumer instead of building a JsonObject tree first
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        try (StartupTrace.Span span = trace.start("parse-json", locale);
+             JsonReader reader = new JsonReader(Files.newBufferedReader(jsonFile.toPath(), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                String value = reader.nextString();
+                if (keyFilter.accepts(key)) {
+                    counter.accept(key, value);
+                }
+                keys.add(key);
+                values.add(value);
+            }
+            reader.endObject();
+            span.parsed(jsonFile.length(), entries[0]);
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Failed to parse language file: " + name, e);
+        }
+        try {
+            BinaryLocaleCache.write(binaryFile, sourceHash, keys, values);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Fail to compile language file: " + name + ".", e);
+        }
+    }
+}
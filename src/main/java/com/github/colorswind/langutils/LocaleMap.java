@@ -3,80 +3,461 @@ package com.github.colorswind.langutils;
 import com.google.gson.JsonObject;
 import org.bukkit.Material;
 import org.bukkit.block.Biome;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.EntityType;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Logger;
 
 public class LocaleMap {
+    // display names of higher levels are cached on first use up to this level and rendered on every call above it
+    private static final int MAX_LAZY_LEVEL = 255;
+
     private final String locale;
-    private final Map<String, String> translations;
+    private final KeyIndex keyIndex;
+    // the value of every key id, or for an overlay only the values that differ from its base, in id order
+    private final String[] values;
+    // compiled form of every value that contains format specifiers, null elsewhere, aligned with values
+    private final TranslationTemplate[] templates;
+    // for an overlay, the locale it shares its other values with, null if the values are stored in full
+    private final LocaleMap base;
+    // for an overlay, one bit per key id set where the value differs from base, and the number of bits set before
+    // each word, so that the slot of a differing value is a rank: ranks[id / 64] + bits set below id in its word
+    private final long[] overlayBits;
+    private final int[] overlayRanks;
+    private final String[] materialNames;
+    private final String[] entityTypeNames;
+    private final String[] biomeNames;
+    private final String[] enchantmentNames;
+    private final String[] enchantmentLevelNames;
+    // [enchantment index][level] for levels up to TranslationKeys.MAX_CACHED_LEVEL
+    private final String[][] enchantmentDisplayNames;
+    // rows of levels up to MAX_LAZY_LEVEL, created when an enchantment is first shown above the eager levels
+    private final AtomicReferenceArray<AtomicReferenceArray<String>> extendedEnchantmentDisplayNames;
+    // computed on first use, 0 until then
+    private volatile long contentHash = 0;
+    // coarse time of the last lookup through the registry, written at most once per tick of its clock
+    private volatile long lastAccess = 0;
+    // reverse indexes, built on first use
+    private volatile NameIndex<Material> materialIndex = null;
+    private volatile NameIndex<EntityType> entityTypeIndex = null;
+    private volatile NameIndex<Biome> biomeIndex = null;
+    private volatile NameIndex<Enchantment> enchantmentIndex = null;
+
+    /**
+     * Build a standalone locale from {@code translations}, with a key index of its own. Locales of the registry share
+     * one key index instead, see {@link #LocaleMap(String, KeyIndex, String[])}.
+     */
     public LocaleMap(@Nonnull String locale, @Nonnull JsonObject translations) {
-        this.locale = locale;
-        this.translations = new HashMap<>();
+        this(locale, new KeyIndex(translations.keySet()), translations);
+    }
+
+    private LocaleMap(@Nonnull String locale, @Nonnull KeyIndex keyIndex, @Nonnull JsonObject translations) {
+        this(locale, keyIndex, toColumn(keyIndex, translations));
+    }
+
+    public LocaleMap(@Nonnull String locale, @Nonnull KeyIndex keyIndex, @Nonnull String[] values) {
+        this(locale, keyIndex, values, null);
+    }
+
+    @Nonnull
+    private static String[] toColumn(@Nonnull KeyIndex keyIndex, @Nonnull JsonObject translations) {
+        String[] values = new String[keyIndex.size()];
         for (String key : translations.keySet()) {
-            this.translations.put(key, translations.get(key).getAsString());
+            values[keyIndex.indexOf(key)] = translations.get(key).getAsString();
+        }
+        return values;
+    }
+
+    /**
+     * @param values the value of every key id
+     * @param base   a locale to store only the differences to, or null to store {@code values} in full. Tables equal
+     *               to those of the base are shared with it too.
+     */
+    LocaleMap(@Nonnull String locale, @Nonnull KeyIndex keyIndex, @Nonnull String[] values,
+              @Nullable LocaleMap base) {
+        if (values.length != keyIndex.size()) {
+            throw new IllegalArgumentException("Value column of " + locale + " does not match the key index.");
+        }
+        if (base != null && (base.base != null || base.keyIndex != keyIndex)) {
+            throw new IllegalArgumentException("Could not store " + locale + " as overlay on " + base.locale + ".");
         }
+        this.locale = locale;
+        this.keyIndex = keyIndex;
+        this.base = base;
+        if (base == null) {
+            this.values = values;
+            this.overlayBits = null;
+            this.overlayRanks = null;
+        } else {
+            this.overlayBits = new long[(values.length + 63) >>> 6];
+            this.overlayRanks = new int[overlayBits.length];
+            List<String> differences = new ArrayList<>();
+            for (int id = 0; id < values.length; id++) {
+                if ((id & 63) == 0) {
+                    overlayRanks[id >>> 6] = differences.size();
+                }
+                if (!Objects.equals(values[id], base.values[id])) {
+                    overlayBits[id >>> 6] |= 1L << id;
+                    differences.add(values[id]);
+                }
+            }
+            this.values = differences.toArray(new String[0]);
+        }
+        this.templates = new TranslationTemplate[this.values.length];
+        for (int slot = 0; slot < this.values.length; slot++) {
+            if (this.values[slot] != null) {
+                templates[slot] = TranslationTemplate.compile(this.values[slot]);
+            }
+        }
+        this.materialNames = translateAll(TranslationKeys.MATERIAL, base != null ? base.materialNames : null);
+        this.entityTypeNames = translateAll(TranslationKeys.ENTITY_TYPE, base != null ? base.entityTypeNames : null);
+        this.biomeNames = translateAll(TranslationKeys.BIOME, base != null ? base.biomeNames : null);
+        this.enchantmentNames = translateAll(TranslationKeys.ENCHANTMENT, base != null ? base.enchantmentNames : null);
+        this.enchantmentLevelNames = translateAll(TranslationKeys.ENCHANTMENT_LEVEL,
+                base != null ? base.enchantmentLevelNames : null);
+        if (base != null && enchantmentNames == base.enchantmentNames
+                && enchantmentLevelNames == base.enchantmentLevelNames) {
+            this.enchantmentDisplayNames = base.enchantmentDisplayNames;
+        } else {
+            this.enchantmentDisplayNames = new String[enchantmentNames.length][TranslationKeys.MAX_CACHED_LEVEL + 1];
+            for (int index = 0; index < enchantmentNames.length; index++) {
+                for (int level = 0; level <= TranslationKeys.MAX_CACHED_LEVEL; level++) {
+                    enchantmentDisplayNames[index][level] = renderEnchantment(enchantmentNames[index],
+                            enchantmentLevelNames[level]);
+                }
+            }
+        }
+        this.extendedEnchantmentDisplayNames = new AtomicReferenceArray<>(enchantmentNames.length);
+    }
+
+    /**
+     * @param shared the same table of the base locale, returned instead if it holds the same names
+     */
+    @Nonnull
+    private String[] translateAll(@Nonnull String[] translationKeys, @Nullable String[] shared) {
+        String[] names = new String[translationKeys.length];
+        for (int i = 0; i < translationKeys.length; i++) {
+            if (translationKeys[i] != null) {
+                // not through translate(), so that building the tables does not show up in the lookup stats
+                int id = keyIndex.indexOf(translationKeys[i]);
+                String value = id >= 0 ? valueAt(id) : null;
+                names[i] = value != null ? value : translationKeys[i];
+            }
+        }
+        return shared != null && Arrays.equals(names, shared) ? shared : names;
+    }
+
+    /**
+     * @return the index of the value of key {@code id} in {@link #values}, or -1 if it is the value of the base
+     */
+    private int slot(int id) {
+        if (overlayBits == null) { return id; }
+        long word = overlayBits[id >>> 6];
+        long bit = 1L << id;
+        return (word & bit) == 0 ? -1 : overlayRanks[id >>> 6] + Long.bitCount(word & (bit - 1));
+    }
+
+    @Nonnull
+    public String getLocale() {
+        return locale;
     }
 
     @Nonnull
     public String translate(@Nonnull String translateKey) {
-        return translations.getOrDefault(translateKey, translateKey);
+        long start = LookupStats.startTranslation();
+        int id = keyIndex.indexOf(translateKey);
+        String value = id >= 0 ? valueAt(id) : null;
+        if (start != 0) {
+            LookupStats.endTranslation(start);
+        }
+        if (value == null) {
+            recordMiss(translateKey, id);
+            return translateKey;
+        }
+        return value;
     }
 
-    public void testMaterial(@Nonnull File file, @Nonnull Logger logger) throws IOException {
-        if (file.exists()) { return; }
-        logger.info("Dump " + locale + " material to " + file.getName() + ".");
-        FileConfiguration config = new YamlConfiguration();
-        for (Material material : Material.values()) {
-            String translatedKey = TranslationHelper.PROVIDER.getItemTranslationKey(material);
-            config.set(material.name(), translate(translatedKey));
+    /**
+     * Translate a parameterized entry such as {@code chat.type.advancement.task}, substituting {@code %s} and
+     * {@code %n$s} with {@code args}.
+     *
+     * @return the rendered value, the stored value if it has no specifiers, or the key itself if it is missing
+     */
+    @Nonnull
+    public String translate(@Nonnull String translateKey, @Nonnull Object... args) {
+        long start = LookupStats.startTranslation();
+        int id = keyIndex.indexOf(translateKey);
+        int slot = id >= 0 ? slot(id) : 0;
+        // the column holding the value: this locale's own, or for a value shared with the base, the base's
+        LocaleMap owner = slot >= 0 ? this : base;
+        if (slot < 0) {
+            slot = id;
         }
-        config.save(file);
+        if (id < 0 || owner.values[slot] == null) {
+            if (start != 0) {
+                LookupStats.endTranslation(start);
+            }
+            recordMiss(translateKey, id);
+            return translateKey;
+        }
+        TranslationTemplate template = owner.templates[slot];
+        String value = template != null ? template.render(args) : owner.values[slot];
+        if (start != 0) {
+            LookupStats.endTranslation(start);
+        }
+        return value;
     }
 
-    public void testEntityType(@Nonnull File file, @Nonnull Logger logger) throws IOException {
-        if (file.exists()) { return; }
-        logger.info("Dump " + locale + " entity type to " + file.getName() + ".");
-        FileConfiguration config = new YamlConfiguration();
-        for (EntityType entityType : EntityType.values()) {
-            if (entityType == EntityType.UNKNOWN) { continue; }
-            String translatedKey = TranslationHelper.PROVIDER.getEntityTranslationKey(entityType);
-            config.set(entityType.name(), translate(translatedKey));
+    private void recordMiss(@Nonnull String translateKey, int id) {
+        LookupStats.recordMiss(translateKey);
+        KeyFilter filter = keyIndex.getFilter();
+        if (id < 0 && filter != null) {
+            filter.checkMiss(translateKey);
         }
-        config.save(file);
     }
 
-    public void testBiome(@Nonnull File file, @Nonnull Logger logger) throws IOException {
-        if (file.exists()) { return; }
-        logger.info("Dump " + locale + " biome to " + file.getName() + ".");
-        FileConfiguration config = new YamlConfiguration();
-        for (Biome biome : Biome.values()) {
-            String translatedKey = TranslationHelper.PROVIDER.getBiomeTranslationKey(biome);
-            config.set(biome.getKey().toString(), translate(translatedKey));
+    @Nonnull
+    KeyIndex getKeyIndex() {
+        return keyIndex;
+    }
+
+    /**
+     * Record a lookup at {@code now}. Only writes when the time changed, so that lookups on many threads do not keep
+     * invalidating the cache line of the field.
+     */
+    void touch(long now) {
+        if (lastAccess != now) {
+            lastAccess = now;
         }
-        config.save(file);
     }
 
-    public void testEnchantment(@Nonnull File file, @Nonnull Logger logger) throws IOException {
-        if (file.exists()) { return; }
-        logger.info("Dump " + locale + " enchantment to " + file.getName() + ".");
-        FileConfiguration config = new YamlConfiguration();
-        for (Enchantment enchantment : Enchantment.values()) {
-            String translatedKey = TranslationHelper.PROVIDER.getEnchantmentTranslationKey(enchantment);
-            config.set(enchantment.getKey().toString(), translate(translatedKey));
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * @return the value of key {@code id} of the key index, without counting the lookup
+     */
+    @Nullable
+    String valueAt(int id) {
+        int slot = slot(id);
+        return slot >= 0 ? values[slot] : base.values[id];
+    }
+
+    /**
+     * @return the locale whose values this one shares where they are equal, or null if it stores all of them
+     */
+    @Nullable
+    LocaleMap getOverlayBase() {
+        return base;
+    }
+
+    @Nonnull
+    public String getMaterialName(@Nonnull Material material) {
+        String name = materialNames[material.ordinal()];
+        return name != null ? name : translate(TranslationHelper.PROVIDER.getItemTranslationKey(material));
+    }
+
+    @Nonnull
+    public String getEntityTypeName(@Nonnull EntityType entityType) {
+        String name = entityTypeNames[entityType.ordinal()];
+        return name != null ? name : translate(TranslationHelper.PROVIDER.getEntityTranslationKey(entityType));
+    }
+
+    @Nonnull
+    public String getBiomeName(@Nonnull Biome biome) {
+        String name = biomeNames[biome.ordinal()];
+        return name != null ? name : translate(TranslationHelper.PROVIDER.getBiomeTranslationKey(biome));
+    }
+
+    @Nonnull
+    public String getEnchantmentName(@Nonnull Enchantment enchantment) {
+        int index = TranslationKeys.indexOf(enchantment);
+        return index >= 0 ? enchantmentNames[index]
+                : translate(TranslationHelper.PROVIDER.getEnchantmentTranslationKey(enchantment));
+    }
+
+    /**
+     * @return the enchantment name followed by its level name. Repeated calls return the same instance for levels up
+     * to 255.
+     */
+    @Nonnull
+    public String getEnchantmentDisplayName(@Nonnull Enchantment enchantment, int level) {
+        int index = TranslationKeys.indexOf(enchantment);
+        if (index < 0 || level < 0 || level > MAX_LAZY_LEVEL) {
+            return renderEnchantment(getEnchantmentName(enchantment), getEnchantmentLevelName(level));
+        }
+        if (level <= TranslationKeys.MAX_CACHED_LEVEL) {
+            return enchantmentDisplayNames[index][level];
+        }
+        AtomicReferenceArray<String> row = extendedEnchantmentDisplayNames.get(index);
+        if (row == null) {
+            extendedEnchantmentDisplayNames.compareAndSet(index, null, new AtomicReferenceArray<>(MAX_LAZY_LEVEL + 1));
+            row = extendedEnchantmentDisplayNames.get(index);
+        }
+        String displayName = row.get(level);
+        if (displayName == null) {
+            row.compareAndSet(level, null, renderEnchantment(enchantmentNames[index], getEnchantmentLevelName(level)));
+            displayName = row.get(level);
+        }
+        return displayName;
+    }
+
+    @Nonnull
+    private static String renderEnchantment(@Nonnull String name, @Nonnull String levelName) {
+        return name + (!levelName.isEmpty() ? " " + levelName : "");
+    }
+
+    @Nonnull
+    public String getEnchantmentLevelName(int level) {
+        if (level >= 0 && level < enchantmentLevelNames.length) {
+            return enchantmentLevelNames[level];
         }
-        config.save(file);
+        return translate(TranslationHelper.PROVIDER.getEnchantmentLevelTranslationKey(level));
     }
 
+    /**
+     * @return the index from the material names of this locale back to materials, built on first use
+     */
+    @Nonnull
+    public NameIndex<Material> getMaterialIndex() {
+        NameIndex<Material> index = materialIndex;
+        if (index == null) {
+            // a race builds the same immutable index twice, which is cheaper than locking every read
+            materialIndex = index = new NameIndex<>(materialNames, Material.values());
+        }
+        return index;
+    }
 
+    @Nonnull
+    public NameIndex<EntityType> getEntityTypeIndex() {
+        NameIndex<EntityType> index = entityTypeIndex;
+        if (index == null) {
+            entityTypeIndex = index = new NameIndex<>(entityTypeNames, EntityType.values());
+        }
+        return index;
+    }
 
+    @Nonnull
+    public NameIndex<Biome> getBiomeIndex() {
+        NameIndex<Biome> index = biomeIndex;
+        if (index == null) {
+            biomeIndex = index = new NameIndex<>(biomeNames, Biome.values());
+        }
+        return index;
+    }
 
+    @Nonnull
+    public NameIndex<Enchantment> getEnchantmentIndex() {
+        NameIndex<Enchantment> index = enchantmentIndex;
+        if (index == null) {
+            enchantmentIndex = index = new NameIndex<>(enchantmentNames, TranslationKeys.ENCHANTMENTS);
+        }
+        return index;
+    }
+
+    public void testMaterial(@Nonnull File file, @Nonnull Logger logger) throws IOException {
+        test(LanguageDumper.Category.MATERIAL, "material", file, logger);
+    }
+
+    public void testEntityType(@Nonnull File file, @Nonnull Logger logger) throws IOException {
+        test(LanguageDumper.Category.ENTITY_TYPE, "entity type", file, logger);
+    }
+
+    public void testBiome(@Nonnull File file, @Nonnull Logger logger) throws IOException {
+        test(LanguageDumper.Category.BIOME, "biome", file, logger);
+    }
+
+    public void testEnchantment(@Nonnull File file, @Nonnull Logger logger) throws IOException {
+        test(LanguageDumper.Category.ENCHANTMENT, "enchantment", file, logger);
+    }
+
+    private void test(@Nonnull LanguageDumper.Category category, @Nonnull String name, @Nonnull File file,
+                      @Nonnull Logger logger) throws IOException {
+        if (file.exists()) { return; }
+        logger.info("Dump " + locale + " " + name + " to " + file.getName() + ".");
+        LanguageDumper.dump(this, category, file);
+    }
+
+    /**
+     * @return the estimated size of this locale without the key index it shares with the others. Objects
+     * {@code estimator} has already counted are not counted again.
+     */
+    @Nonnull
+    MemoryReport.LocaleFootprint estimateFootprint(@Nonnull MemoryEstimator estimator) {
+        long size = estimator.visit(this) ? MemoryEstimator.object(18, 0, 2) : 0;
+        size += estimator.string(locale);
+        int entries = 0;
+        for (int id = 0; id < keyIndex.size(); id++) {
+            if (valueAt(id) != null) {
+                entries++;
+            }
+        }
+        long valueBytes = estimator.strings(values) + estimator.longs(overlayBits) + estimator.ints(overlayRanks);
+        long templateBytes = 0;
+        if (estimator.visit(templates)) {
+            templateBytes += MemoryEstimator.referenceArray(templates.length);
+            for (TranslationTemplate template : templates) {
+                if (template != null) {
+                    templateBytes += template.estimateBytes(estimator);
+                }
+            }
+        }
+        long cacheBytes = estimator.strings(materialNames) + estimator.strings(entityTypeNames)
+                + estimator.strings(biomeNames) + estimator.strings(enchantmentNames)
+                + estimator.strings(enchantmentLevelNames);
+        if (estimator.visit(enchantmentDisplayNames)) {
+            cacheBytes += MemoryEstimator.referenceArray(enchantmentDisplayNames.length);
+            for (String[] row : enchantmentDisplayNames) {
+                cacheBytes += estimator.strings(row);
+            }
+        }
+        if (estimator.visit(extendedEnchantmentDisplayNames)) {
+            cacheBytes += MemoryEstimator.object(1, 0, 0)
+                    + MemoryEstimator.referenceArray(extendedEnchantmentDisplayNames.length());
+            for (int index = 0; index < extendedEnchantmentDisplayNames.length(); index++) {
+                AtomicReferenceArray<String> row = extendedEnchantmentDisplayNames.get(index);
+                if (row == null) { continue; }
+                cacheBytes += MemoryEstimator.object(1, 0, 0) + MemoryEstimator.referenceArray(row.length());
+                for (int level = 0; level < row.length(); level++) {
+                    cacheBytes += estimator.string(row.get(level));
+                }
+            }
+        }
+        for (NameIndex<?> index : new NameIndex<?>[]{materialIndex, entityTypeIndex, biomeIndex, enchantmentIndex}) {
+            if (index != null) {
+                cacheBytes += index.estimateBytes(estimator);
+            }
+        }
+        return new MemoryReport.LocaleFootprint(locale, entries, valueBytes, templateBytes, cacheBytes,
+                size + valueBytes + templateBytes + cacheBytes);
+    }
+
+    /**
+     * @return a hash of every translation of this locale, which changes whenever any of them does
+     */
+    long contentHash() {
+        long hash = contentHash;
+        if (hash == 0) {
+            hash = 1;
+            for (int id = 0; id < keyIndex.size(); id++) {
+                String value = valueAt(id);
+                hash = hash * 1000003 + (value != null ? value.hashCode() : 0);
+            }
+            if (hash == 0) {
+                hash = 1;
+            }
+            contentHash = hash;
+        }
+        return hash;
+    }
 }
@@ -0,0 +1,189 @@
+package com.github.colorswind.langutils;
+
+import com.meowj.langutils.lang.LanguageHelper;
+import org.bukkit.block.Biome;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A message whose template and arguments are localized per recipient, e.g. "%s found %s" with a player name and an
+ * item. Broadcasting groups the recipients by language and renders the message once per language, so the cost grows
+ * with the number of distinct languages rather than the number of players.
+ * <p>
+ * Templates use Minecraft's format: {@code %s} takes the next argument, {@code %n$s} argument {@code n} and
+ * {@code %%} is a percent sign. Arguments read what they need from Bukkit objects when they are added, which must
+ * happen on the main thread; after that, a message may be rendered from any thread as long as the renderers passed
+ * to {@link #arg(Function)} may.
+ */
+public final class LocalizedMessage {
+    private final String template;
+    private final boolean translatable;
+    // compiled literal template, null if it is translatable or has no format specifier
+    private final TranslationTemplate compiled;
+    private final List<Function<? super LocaleMap, ?>> arguments = new ArrayList<>();
+
+    private LocalizedMessage(@Nonnull String template, boolean translatable) {
+        this.template = template;
+        this.translatable = translatable;
+        this.compiled = translatable ? null : TranslationTemplate.compile(template);
+    }
+
+    /**
+     * @param template the same text for every language, e.g. a message from the plugin config
+     */
+    @Nonnull
+    public static LocalizedMessage of(@Nonnull String template) {
+        return new LocalizedMessage(template, false);
+    }
+
+    /**
+     * @param translationKey key of a Minecraft translation used as template, e.g. {@code chat.type.advancement.task}
+     */
+    @Nonnull
+    public static LocalizedMessage translatable(@Nonnull String translationKey) {
+        return new LocalizedMessage(translationKey, true);
+    }
+
+    /**
+     * Add an argument that is the same in every language, such as a player name.
+     */
+    @Nonnull
+    public LocalizedMessage arg(@Nonnull Object value) {
+        arguments.add(localeMap -> value);
+        return this;
+    }
+
+    /**
+     * Add an argument rendered by {@code renderer} for each language.
+     */
+    @Nonnull
+    public LocalizedMessage arg(@Nonnull Function<? super LocaleMap, ?> renderer) {
+        arguments.add(renderer);
+        return this;
+    }
+
+    @Nonnull
+    public LocalizedMessage item(@Nonnull ItemStack item) {
+        ItemStack copy = item.clone();
+        return arg(localeMap -> LanguageHelper.getItemDisplayName(copy, localeMap));
+    }
+
+    /**
+     * Add the display name of {@code entity}, read now since entities may only be accessed on the main thread.
+     */
+    @Nonnull
+    public LocalizedMessage entity(@Nonnull Entity entity) {
+        String customName = entity.getCustomName();
+        return customName != null ? arg(customName) : entityType(entity.getType());
+    }
+
+    @Nonnull
+    public LocalizedMessage entityType(@Nonnull EntityType entityType) {
+        return arg(localeMap -> localeMap.getEntityTypeName(entityType));
+    }
+
+    @Nonnull
+    public LocalizedMessage enchantment(@Nonnull Enchantment enchantment, int level) {
+        return arg(localeMap -> localeMap.getEnchantmentDisplayName(enchantment, level));
+    }
+
+    @Nonnull
+    public LocalizedMessage biome(@Nonnull Biome biome) {
+        return arg(localeMap -> localeMap.getBiomeName(biome));
+    }
+
+    /**
+     * Add a translated Minecraft entry as argument.
+     */
+    @Nonnull
+    public LocalizedMessage translation(@Nonnull String translationKey) {
+        return arg(localeMap -> localeMap.translate(translationKey));
+    }
+
+    /**
+     * @return the message in the language of {@code localeMap}
+     */
+    @Nonnull
+    public String render(@Nonnull LocaleMap localeMap) {
+        Object[] args = new Object[arguments.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = arguments.get(i).apply(localeMap);
+        }
+        if (translatable) {
+            return localeMap.translate(template, args);
+        }
+        return compiled != null ? compiled.render(args) : template;
+    }
+
+    /**
+     * The message rendered for one language and the recipients who use it.
+     */
+    public static final class Rendering {
+        private final LocaleMap localeMap;
+        private final String message;
+        private final List<Player> recipients;
+
+        private Rendering(@Nonnull LocaleMap localeMap, @Nonnull String message, @Nonnull List<Player> recipients) {
+            this.localeMap = localeMap;
+            this.message = message;
+            this.recipients = Collections.unmodifiableList(recipients);
+        }
+
+        @Nonnull
+        public LocaleMap getLocaleMap() {
+            return localeMap;
+        }
+
+        @Nonnull
+        public String getMessage() {
+            return message;
+        }
+
+        @Nonnull
+        public List<Player> getRecipients() {
+            return recipients;
+        }
+    }
+
+    /**
+     * Group {@code recipients} by the language they resolve to and render the message once per language.
+     *
+     * @return one rendering per distinct language among the recipients
+     */
+    @Nonnull
+    public List<Rendering> render(@Nonnull Collection<? extends Player> recipients) {
+        // players whose locale is not loaded resolve to the same fallback map, and share its rendering
+        Map<LocaleMap, List<Player>> groups = new IdentityHashMap<>();
+        for (Player player : recipients) {
+            groups.computeIfAbsent(LangRegistry.getLocaleMap(player), localeMap -> new ArrayList<>()).add(player);
+        }
+        List<Rendering> renderings = new ArrayList<>(groups.size());
+        for (Map.Entry<LocaleMap, List<Player>> group : groups.entrySet()) {
+            renderings.add(new Rendering(group.getKey(), render(group.getKey()), group.getValue()));
+        }
+        return renderings;
+    }
+
+    /**
+     * Render the message once per language and send it to every recipient.
+     */
+    public void broadcast(@Nonnull Collection<? extends Player> recipients) {
+        for (Rendering rendering : render(recipients)) {
+            for (Player player : rendering.recipients) {
+                player.sendMessage(rendering.message);
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.colorswind.langutils;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of how the registry is used since the plugin was enabled. Every counter is a {@link LongAdder}, so
+ * lookups on different threads do not contend; only one in {@value #SAMPLE_RATE} translations is timed.
+ */
+public final class LookupStats {
+    static final int SAMPLE_RATE = 1024;
+    private static final int SAMPLE_MASK = SAMPLE_RATE - 1;
+    // bounds on the distinct names tracked, further names are only counted in the totals
+    private static final int MAX_TRACKED_LOCALES = 256;
+    private static final int MAX_TRACKED_MISSES = 1024;
+    static final String OTHER_LOCALES = "other";
+
+    private static final Map<String, LongAdder> LOCALE_LOOKUPS = new ConcurrentHashMap<>();
+    private static final LongAdder FALLBACK_HITS = new LongAdder();
+    private static final LongAdder TRANSLATIONS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final Map<String, LongAdder> MISSING_KEYS = new ConcurrentHashMap<>();
+    // misses of untracked keys once MISSING_KEYS is full, folded in when the top list is read. A ring overwriting its
+    // oldest entries, so recording stays lock-free and under heavy churn only the latest misses are folded in
+    private static final AtomicReferenceArray<String> PENDING_MISSES = new AtomicReferenceArray<>(MAX_TRACKED_MISSES);
+    private static final AtomicInteger PENDING_INDEX = new AtomicInteger();
+    // bucket i counts samples that took [2^(i-1), 2^i) ns, bucket 0 those below the timer resolution
+    private static final LongAdder[] LATENCY_BUCKETS = new LongAdder[64];
+    private static final LongAdder LATENCY_TOTAL = new LongAdder();
+    private static final LongAccumulator LATENCY_MAX = new LongAccumulator(Math::max, 0);
+
+    static {
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            LATENCY_BUCKETS[i] = new LongAdder();
+        }
+    }
+
+    private LookupStats() {
+    }
+
+    /**
+     * Count a registry lookup of {@code locale}, which must already be standardized.
+     */
+    static void recordLookup(@Nonnull String locale, boolean fallback) {
+        LongAdder adder = LOCALE_LOOKUPS.get(locale);
+        if (adder == null) {
+            adder = LOCALE_LOOKUPS.size() < MAX_TRACKED_LOCALES
+                    ? LOCALE_LOOKUPS.computeIfAbsent(locale, l -> new LongAdder())
+                    : LOCALE_LOOKUPS.computeIfAbsent(OTHER_LOCALES, l -> new LongAdder());
+        }
+        adder.increment();
+        if (fallback) {
+            FALLBACK_HITS.increment();
+        }
+    }
+
+    static void recordMiss(@Nonnull String translationKey) {
+        MISSES.increment();
+        LongAdder adder = MISSING_KEYS.get(translationKey);
+        if (adder == null) {
+            if (MISSING_KEYS.size() >= MAX_TRACKED_MISSES) {
+                PENDING_MISSES.set(PENDING_INDEX.getAndIncrement() & (MAX_TRACKED_MISSES - 1), translationKey);
+                return;
+            }
+            adder = MISSING_KEYS.computeIfAbsent(translationKey, k -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    /**
+     * Count the pending misses, each untracked key taking the place of the least missed one and inheriting its count
+     * (space-saving), so that a key missed often enough always makes it into the top list.
+     */
+    private static void foldPendingMisses() {
+        synchronized (MISSING_KEYS) {
+            for (int i = 0; i < PENDING_MISSES.length(); i++) {
+                String translationKey = PENDING_MISSES.getAndSet(i, null);
+                if (translationKey == null) { continue; }
+                LongAdder adder = MISSING_KEYS.get(translationKey);
+                if (adder == null) {
+                    adder = replaceLeastMissed(translationKey);
+                }
+                adder.increment();
+            }
+        }
+    }
+
+    /**
+     * Only called by {@link #foldPendingMisses()}, which holds the lock.
+     */
+    @Nonnull
+    private static LongAdder replaceLeastMissed(@Nonnull String translationKey) {
+        String leastMissed = null;
+        long leastCount = Long.MAX_VALUE;
+        for (Map.Entry<String, LongAdder> entry : MISSING_KEYS.entrySet()) {
+            long count = entry.getValue().sum();
+            if (count < leastCount) {
+                leastMissed = entry.getKey();
+                leastCount = count;
+            }
+        }
+        LongAdder adder = new LongAdder();
+        if (leastMissed != null) {
+            MISSING_KEYS.remove(leastMissed);
+            adder.add(leastCount);
+        }
+        MISSING_KEYS.put(translationKey, adder);
+        return adder;
+    }
+
+    /**
+     * Count a translation and decide whether to time it.
+     *
+     * @return {@link System#nanoTime()} if this translation is sampled, 0 otherwise
+     */
+    static long startTranslation() {
+        TRANSLATIONS.increment();
+        return (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0 ? System.nanoTime() : 0;
+    }
+
+    static void endTranslation(long start) {
+        long nanos = Math.max(0, System.nanoTime() - start);
+        LATENCY_BUCKETS[64 - Long.numberOfLeadingZeros(nanos)].increment();
+        LATENCY_TOTAL.add(nanos);
+        LATENCY_MAX.accumulate(nanos);
+    }
+
+    public static long getTranslations() {
+        return TRANSLATIONS.sum();
+    }
+
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    public static long getFallbackHits() {
+        return FALLBACK_HITS.sum();
+    }
+
+    /**
+     * @return lookups per requested locale, most used first
+     */
+    @Nonnull
+    public static Map<String, Long> getLocaleLookups() {
+        return sorted(LOCALE_LOOKUPS, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the {@code limit} most frequently missing translation keys, most missed first. Once more keys have
+     * missed than are tracked, counts are upper bounds that may include misses of keys they replaced, and misses of
+     * untracked keys are only counted when this is called, at most the latest {@value #MAX_TRACKED_MISSES} of them.
+     */
+    @Nonnull
+    public static Map<String, Long> getTopMissingKeys(int limit) {
+        foldPendingMisses();
+        return sorted(MISSING_KEYS, limit);
+    }
+
+    public static long getLatencySamples() {
+        long samples = 0;
+        for (LongAdder bucket : LATENCY_BUCKETS) {
+            samples += bucket.sum();
+        }
+        return samples;
+    }
+
+    public static long getLatencyTotalNanos() {
+        return LATENCY_TOTAL.sum();
+    }
+
+    public static long getLatencyMaxNanos() {
+        return LATENCY_MAX.get();
+    }
+
+    /**
+     * @return an upper bound of the sampled translation time at {@code percentile} (0 to 100), accurate to a power
+     * of two, or 0 if nothing has been sampled yet
+     */
+    public static long getLatencyPercentileNanos(double percentile) {
+        long[] counts = new long[LATENCY_BUCKETS.length];
+        long samples = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = LATENCY_BUCKETS[i].sum();
+            samples += counts[i];
+        }
+        if (samples == 0) { return 0; }
+        long rank = (long) Math.ceil(samples * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return i == 0 ? 0 : Math.min(LATENCY_MAX.get(), (1L << i) - 1);
+            }
+        }
+        return LATENCY_MAX.get();
+    }
+
+    @Nonnull
+    private static Map<String, Long> sorted(@Nonnull Map<String, LongAdder> counters, int limit) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counters.size());
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            result.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.colorswind.langutils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Estimates the shallow and retained size of the registry's own structures by walking them, without a heap dump.
+ * Sizes assume a 64-bit JVM with compressed references and compact strings, the default on the Java versions
+ * servers run. Every object is counted once per estimator, however many times it is reached.
+ */
+final class MemoryEstimator {
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * @return whether {@code object} has not been counted yet, marking it as counted
+     */
+    boolean visit(@Nonnull Object object) {
+        return seen.add(object);
+    }
+
+    static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @return the size of an object with the given fields, excluding whatever they reference
+     */
+    static long object(int references, int ints, int longs) {
+        return align(OBJECT_HEADER + (long) references * REFERENCE + ints * 4L + longs * 8L);
+    }
+
+    static long referenceArray(int length) {
+        return align(ARRAY_HEADER + (long) length * REFERENCE);
+    }
+
+    static long intArray(int length) {
+        return align(ARRAY_HEADER + length * 4L);
+    }
+
+    /**
+     * @return the size of {@code value} and its backing array, or 0 if it is null or already counted
+     */
+    long string(@Nullable String value) {
+        if (value == null || !visit(value)) { return 0; }
+        return stringSize(value);
+    }
+
+    static long stringSize(@Nonnull String value) {
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) <= 0xFF;
+        }
+        // value, hash, coder and hashIsZero
+        return align(OBJECT_HEADER + REFERENCE + 4 + 2) + align(ARRAY_HEADER
+                + (long) value.length() * (latin1 ? 1 : 2));
+    }
+
+    /**
+     * @return the size of {@code values} and of every string in it not counted yet
+     */
+    long strings(@Nullable String[] values) {
+        if (values == null || !visit(values)) { return 0; }
+        long size = referenceArray(values.length);
+        for (String value : values) {
+            size += string(value);
+        }
+        return size;
+    }
+
+    long ints(@Nullable int[] values) {
+        if (values == null || !visit(values)) { return 0; }
+        return intArray(values.length);
+    }
+
+    long longs(@Nullable long[] values) {
+        if (values == null || !visit(values)) { return 0; }
+        return align(ARRAY_HEADER + values.length * 8L);
+    }
+}
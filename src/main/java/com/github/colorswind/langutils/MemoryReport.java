@@ -0,0 +1,192 @@
+package com.github.colorswind.langutils;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimated heap retained by the languages of the registry, computed by walking its structures. Figures are
+ * estimates for sizing heaps, not exact measurements: they assume a 64-bit JVM with compressed references and
+ * compact strings.
+ */
+public final class MemoryReport {
+    private final List<LocaleFootprint> locales;
+    private final long sharedBytes;
+    private final long totalBytes;
+    private final int duplicatedValues;
+    private final int duplicatedCopies;
+    private final long duplicatedCopyBytes;
+
+    private MemoryReport(@Nonnull List<LocaleFootprint> locales, long sharedBytes, long totalBytes,
+                         int duplicatedValues, int duplicatedCopies, long duplicatedCopyBytes) {
+        this.locales = Collections.unmodifiableList(locales);
+        this.sharedBytes = sharedBytes;
+        this.totalBytes = totalBytes;
+        this.duplicatedValues = duplicatedValues;
+        this.duplicatedCopies = duplicatedCopies;
+        this.duplicatedCopyBytes = duplicatedCopyBytes;
+    }
+
+    /**
+     * Estimated size of one locale. Strings it shares with other locales are counted in full here, so the sizes of
+     * all locales add up to more than {@link #getTotalBytes()}. A locale stored as overlay only counts what it adds
+     * to its base locale.
+     */
+    public static final class LocaleFootprint {
+        private final String locale;
+        private final int entries;
+        private final long valueBytes;
+        private final long templateBytes;
+        private final long cacheBytes;
+        private final long totalBytes;
+
+        LocaleFootprint(@Nonnull String locale, int entries, long valueBytes, long templateBytes, long cacheBytes,
+                        long totalBytes) {
+            this.locale = locale;
+            this.entries = entries;
+            this.valueBytes = valueBytes;
+            this.templateBytes = templateBytes;
+            this.cacheBytes = cacheBytes;
+            this.totalBytes = totalBytes;
+        }
+
+        @Nonnull
+        public String getLocale() {
+            return locale;
+        }
+
+        /**
+         * @return the number of keys with a value, including those merged in from the fallback chain
+         */
+        public int getEntries() {
+            return entries;
+        }
+
+        /**
+         * @return the value column and the strings it holds
+         */
+        public long getValueBytes() {
+            return valueBytes;
+        }
+
+        /**
+         * @return the compiled form of the values that take arguments
+         */
+        public long getTemplateBytes() {
+            return templateBytes;
+        }
+
+        /**
+         * @return the precomputed name tables, enchantment display names and the reverse indexes built so far
+         */
+        public long getCacheBytes() {
+            return cacheBytes;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Walk {@code localeMaps} and the loader behind them.
+     */
+    @Nonnull
+    static MemoryReport measure(@Nonnull LocaleLoader loader, @Nonnull Collection<LocaleMap> localeMaps) {
+        List<LocaleFootprint> locales = new ArrayList<>(localeMaps.size());
+        for (LocaleMap localeMap : localeMaps) {
+            // a fresh estimator per locale, so that each figure is what the locale holds on its own
+            MemoryEstimator estimator = new MemoryEstimator();
+            LocaleMap base = localeMap.getOverlayBase();
+            if (base != null) {
+                // an overlay is reported by what it adds to its base
+                base.estimateFootprint(estimator);
+            }
+            locales.add(localeMap.estimateFootprint(estimator));
+        }
+        locales.sort((a, b) -> Long.compare(b.totalBytes, a.totalBytes));
+
+        MemoryEstimator estimator = new MemoryEstimator();
+        long totalBytes = 0;
+        for (LocaleMap localeMap : localeMaps) {
+            totalBytes += localeMap.estimateFootprint(estimator).totalBytes;
+            LocaleMap base = localeMap.getOverlayBase();
+            if (base != null) {
+                // retained by the overlay even if the base itself has been unloaded
+                totalBytes += base.estimateFootprint(estimator).totalBytes;
+            }
+        }
+        long sharedBytes = loader.estimateBytes(estimator);
+        totalBytes += sharedBytes;
+
+        // the first instance of every value, and whether it was found again in another locale
+        Map<String, String> firstInstances = new HashMap<>();
+        Map<String, Boolean> duplicated = new HashMap<>();
+        int duplicatedCopies = 0;
+        long duplicatedCopyBytes = 0;
+        for (LocaleMap localeMap : localeMaps) {
+            Map<String, Boolean> seenInLocale = new HashMap<>();
+            for (int id = 0; id < loader.keyIndex.size(); id++) {
+                String value = localeMap.valueAt(id);
+                if (value == null || seenInLocale.put(value, Boolean.TRUE) != null) { continue; }
+                String first = firstInstances.putIfAbsent(value, value);
+                if (first == null) { continue; }
+                duplicated.put(value, Boolean.TRUE);
+                if (first != value) {
+                    duplicatedCopies++;
+                    duplicatedCopyBytes += MemoryEstimator.stringSize(value);
+                }
+            }
+        }
+        return new MemoryReport(locales, sharedBytes, totalBytes, duplicated.size(), duplicatedCopies,
+                duplicatedCopyBytes);
+    }
+
+    /**
+     * @return the loaded locales, largest first
+     */
+    @Nonnull
+    public List<LocaleFootprint> getLocales() {
+        return locales;
+    }
+
+    /**
+     * @return the key index, which every locale shares, the raw columns of languages still loading and the
+     * string pool
+     */
+    public long getSharedBytes() {
+        return sharedBytes;
+    }
+
+    /**
+     * @return everything the registry retains, with each object counted once however many locales share it
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the number of distinct values found in more than one locale
+     */
+    public int getDuplicatedValues() {
+        return duplicatedValues;
+    }
+
+    /**
+     * @return how many of those repeated values are separate string instances rather than one shared instance
+     */
+    public int getDuplicatedCopies() {
+        return duplicatedCopies;
+    }
+
+    /**
+     * @return the bytes held by those separate instances, which {@code DeduplicateStrings} would save
+     */
+    public long getDuplicatedCopyBytes() {
+        return duplicatedCopyBytes;
+    }
+}
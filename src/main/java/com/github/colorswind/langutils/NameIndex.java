@@ -0,0 +1,291 @@
+package com.github.colorswind.langutils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable reverse index from the localized names of one locale to the objects they name, e.g. from "钻石剑" to
+ * {@code Material.DIAMOND_SWORD}. Safe to query from any thread.
+ * <p>
+ * Names are compared after {@link #normalize(String)}. Exact and prefix matches are binary searches over sorted
+ * names, prefix matches also start at every word of a name. Fuzzy matches rank names by the Dice coefficient of
+ * their character bigrams, looked up through an inverted bigram index.
+ */
+public final class NameIndex<T> {
+    // fuzzy matches sharing fewer bigrams than this with the query are dropped
+    private static final double MIN_FUZZY_SCORE = 0.3;
+
+    private final T[] values;
+    // normalized full names and the ids they belong to, sorted by name then id
+    private final String[] names;
+    private final int[] nameIds;
+    // normalized names from their second word on, sorted the same way
+    private final String[] words;
+    private final int[] wordIds;
+    // sorted distinct bigrams and, for each, the ascending ids of names containing it
+    private final int[] grams;
+    private final int[][] postings;
+    // number of distinct bigrams of each id's name
+    private final int[] gramCounts;
+
+    /**
+     * @param names  the localized name of each value, null to leave a value out
+     * @param values the named objects, aligned with {@code names}
+     */
+    NameIndex(@Nonnull String[] names, @Nonnull T[] values) {
+        this.values = values;
+        List<Entry> fullEntries = new ArrayList<>();
+        List<Entry> wordEntries = new ArrayList<>();
+        Map<Integer, List<Integer>> gramIds = new HashMap<>();
+        this.gramCounts = new int[values.length];
+        for (int id = 0; id < values.length; id++) {
+            if (names[id] == null || values[id] == null) { continue; }
+            String name = normalize(names[id]);
+            if (name.isEmpty()) { continue; }
+            fullEntries.add(new Entry(name, id));
+            for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+                if (i + 1 < name.length()) {
+                    wordEntries.add(new Entry(name.substring(i + 1), id));
+                }
+            }
+            int[] nameGrams = bigrams(name);
+            gramCounts[id] = nameGrams.length;
+            for (int gram : nameGrams) {
+                gramIds.computeIfAbsent(gram, g -> new ArrayList<>()).add(id);
+            }
+        }
+        Collections.sort(fullEntries);
+        Collections.sort(wordEntries);
+        this.names = new String[fullEntries.size()];
+        this.nameIds = new int[fullEntries.size()];
+        fill(fullEntries, this.names, this.nameIds);
+        this.words = new String[wordEntries.size()];
+        this.wordIds = new int[wordEntries.size()];
+        fill(wordEntries, this.words, this.wordIds);
+
+        this.grams = new int[gramIds.size()];
+        int index = 0;
+        for (int gram : gramIds.keySet()) {
+            grams[index++] = gram;
+        }
+        Arrays.sort(grams);
+        this.postings = new int[grams.length][];
+        for (int i = 0; i < grams.length; i++) {
+            List<Integer> ids = gramIds.get(grams[i]);
+            postings[i] = new int[ids.size()];
+            for (int j = 0; j < ids.size(); j++) {
+                postings[i][j] = ids.get(j);
+            }
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String name;
+        private final int id;
+
+        private Entry(@Nonnull String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(@Nonnull Entry other) {
+            int result = name.compareTo(other.name);
+            return result != 0 ? result : Integer.compare(id, other.id);
+        }
+    }
+
+    private static void fill(@Nonnull List<Entry> entries, @Nonnull String[] names, @Nonnull int[] ids) {
+        for (int i = 0; i < entries.size(); i++) {
+            names[i] = entries.get(i).name;
+            ids[i] = entries.get(i).id;
+        }
+    }
+
+    /**
+     * @return {@code name} in the form names are compared in: NFKC normalized, so full-width and half-width forms are
+     * equal, lower case, with runs of whitespace, underscores and hyphens collapsed to a single space
+     */
+    @Nonnull
+    public static String normalize(@Nonnull String name) {
+        String normalized = Normalizer.normalize(name, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder builder = new StringBuilder(normalized.length());
+        boolean space = false;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isWhitespace(c) || c == '_' || c == '-') {
+                space = builder.length() > 0;
+            } else {
+                if (space) {
+                    builder.append(' ');
+                    space = false;
+                }
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the value named exactly {@code name}, or null if there is none. If several values share the name, the
+     * first declared one is returned.
+     */
+    @Nullable
+    public T exact(@Nonnull String name) {
+        String normalized = normalize(name);
+        int index = lowerBound(names, normalized);
+        return index < names.length && names[index].equals(normalized) ? values[nameIds[index]] : null;
+    }
+
+    /**
+     * @return up to {@code limit} values whose name starts with {@code prefix}, those whose full name matches before
+     * those where a later word matches, each group in alphabetical order
+     */
+    @Nonnull
+    public List<T> prefix(@Nonnull String prefix, int limit) {
+        String normalized = normalize(prefix);
+        Set<Integer> ids = new LinkedHashSet<>();
+        collectPrefix(names, nameIds, normalized, ids, limit);
+        collectPrefix(words, wordIds, normalized, ids, limit);
+        return toValues(ids);
+    }
+
+    /**
+     * @return up to {@code limit} values whose name shares enough character bigrams with {@code query}, best match
+     * first. Tolerates typos, missing words and different word order.
+     */
+    @Nonnull
+    public List<T> fuzzy(@Nonnull String query, int limit) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        collectFuzzy(normalize(query), ids, limit);
+        return toValues(ids);
+    }
+
+    /**
+     * The usual lookup behind tab completion: exact match first, then prefix matches, then fuzzy matches.
+     *
+     * @return up to {@code limit} distinct values, best match first
+     */
+    @Nonnull
+    public List<T> search(@Nonnull String query, int limit) {
+        String normalized = normalize(query);
+        Set<Integer> ids = new LinkedHashSet<>();
+        // the exact matches are the first names of the prefix range
+        collectPrefix(names, nameIds, normalized, ids, limit);
+        collectPrefix(words, wordIds, normalized, ids, limit);
+        collectFuzzy(normalized, ids, limit);
+        return toValues(ids);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    long estimateBytes(@Nonnull MemoryEstimator estimator) {
+        if (!estimator.visit(this)) { return 0; }
+        long size = MemoryEstimator.object(8, 0, 0) + MemoryEstimator.referenceArray(values.length)
+                + estimator.strings(names) + estimator.ints(nameIds) + estimator.strings(words)
+                + estimator.ints(wordIds) + estimator.ints(grams) + estimator.ints(gramCounts)
+                + MemoryEstimator.referenceArray(postings.length);
+        for (int[] ids : postings) {
+            size += estimator.ints(ids);
+        }
+        return size;
+    }
+
+    private void collectPrefix(@Nonnull String[] sortedNames, @Nonnull int[] ids, @Nonnull String prefix,
+                               @Nonnull Set<Integer> result, int limit) {
+        for (int i = lowerBound(sortedNames, prefix); i < sortedNames.length && result.size() < limit; i++) {
+            if (!sortedNames[i].startsWith(prefix)) { break; }
+            result.add(ids[i]);
+        }
+    }
+
+    private void collectFuzzy(@Nonnull String query, @Nonnull Set<Integer> result, int limit) {
+        if (result.size() >= limit || query.isEmpty()) { return; }
+        int[] queryGrams = bigrams(query);
+        int[] common = new int[values.length];
+        int[] candidates = new int[values.length];
+        int candidateCount = 0;
+        for (int gram : queryGrams) {
+            int index = Arrays.binarySearch(grams, gram);
+            if (index < 0) { continue; }
+            for (int id : postings[index]) {
+                if (common[id]++ == 0) {
+                    candidates[candidateCount++] = id;
+                }
+            }
+        }
+        double[] scores = new double[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates[i];
+            scores[i] = 2.0 * common[id] / (queryGrams.length + gramCounts[id]);
+        }
+        // selection of the best remaining candidate, cheap for the handful of results a completion needs
+        while (result.size() < limit) {
+            int best = -1;
+            for (int i = 0; i < candidateCount; i++) {
+                if (scores[i] >= MIN_FUZZY_SCORE && (best < 0 || scores[i] > scores[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) { break; }
+            result.add(candidates[best]);
+            scores[best] = -1;
+        }
+    }
+
+    @Nonnull
+    private List<T> toValues(@Nonnull Set<Integer> ids) {
+        List<T> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            result.add(values[id]);
+        }
+        return result;
+    }
+
+    private static int lowerBound(@Nonnull String[] sortedNames, @Nonnull String name) {
+        int low = 0;
+        int high = sortedNames.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedNames[mid].compareTo(name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the distinct bigrams of {@code name} padded with a space on both sides, so that single characters and
+     * word boundaries count too
+     */
+    @Nonnull
+    private static int[] bigrams(@Nonnull String name) {
+        String padded = ' ' + name + ' ';
+        int[] result = new int[padded.length() - 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (padded.charAt(i) << 16) | padded.charAt(i + 1);
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+}
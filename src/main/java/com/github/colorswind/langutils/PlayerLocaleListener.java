@@ -0,0 +1,31 @@
+package com.github.colorswind.langutils;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLocaleChangeEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Keeps the per-player locale cache behind {@link LangRegistry#getLocaleMap(org.bukkit.entity.Player)} up to date.
+ */
+public class PlayerLocaleListener implements Listener {
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(@Nonnull PlayerJoinEvent event) {
+        LangRegistry.updatePlayerLocale(event.getPlayer().getUniqueId(), event.getPlayer().getLocale());
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerLocaleChange(@Nonnull PlayerLocaleChangeEvent event) {
+        LangRegistry.updatePlayerLocale(event.getPlayer().getUniqueId(), event.getLocale());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(@Nonnull PlayerQuitEvent event) {
+        LangRegistry.removePlayerLocale(event.getPlayer().getUniqueId());
+    }
+}
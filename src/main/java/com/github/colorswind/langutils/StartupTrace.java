@@ -0,0 +1,177 @@
+package com.github.colorswind.langutils;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Wall time, bytes and entries of each phase of loading the languages, per locale. Spans may be recorded from any
+ * thread until the trace is frozen once startup has been reported.
+ */
+final class StartupTrace {
+    // bound on the spans kept, the oldest are dropped first
+    private static final int MAX_SPANS = 4096;
+
+    private final long startNanos = System.nanoTime();
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger spanCount = new AtomicInteger();
+    private volatile boolean frozen = false;
+
+    final class Span implements AutoCloseable {
+        private final String phase;
+        private final String locale;
+        private final long spanStartNanos = System.nanoTime();
+        private long nanos;
+        private long bytesDownloaded;
+        private long bytesParsed;
+        private int entries;
+        private boolean discarded = false;
+
+        private Span(@Nonnull String phase, @Nullable String locale) {
+            this.phase = phase;
+            this.locale = locale;
+        }
+
+        @Nonnull
+        Span downloaded(long bytes) {
+            bytesDownloaded += bytes;
+            return this;
+        }
+
+        @Nonnull
+        Span parsed(long bytes, int entries) {
+            this.bytesParsed += bytes;
+            this.entries += entries;
+            return this;
+        }
+
+        /**
+         * Do not record this span, e.g. because the phase turned out to have nothing to do.
+         */
+        void discard() {
+            discarded = true;
+        }
+
+        @Override
+        public void close() {
+            if (discarded || frozen) { return; }
+            nanos = System.nanoTime() - spanStartNanos;
+            spans.add(this);
+            if (spanCount.incrementAndGet() > MAX_SPANS && spans.poll() != null) {
+                spanCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stop recording spans, so that the loads and dumps of a long-running server do not keep growing the trace.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Start timing {@code phase}. The span is recorded once it is closed.
+     *
+     * @param locale the locale the phase works on, null if it is shared by all of them
+     */
+    @Nonnull
+    Span start(@Nonnull String phase, @Nullable String locale) {
+        return new Span(phase, locale);
+    }
+
+    @Nonnull
+    private List<Span> sortedSpans() {
+        List<Span> sorted = new ArrayList<>(spans);
+        sorted.sort(Comparator.comparingLong(span -> span.spanStartNanos));
+        return sorted;
+    }
+
+    /**
+     * Log one line per span, followed by the totals of each phase.
+     */
+    void log(@Nonnull Logger logger) {
+        List<Span> sorted = sortedSpans();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Startup trace, %d ms in total:%n",
+                (System.nanoTime() - startNanos) / 1_000_000));
+        String format = "%-12s %-8s %9s %12s %12s %8s%n";
+        builder.append(String.format(format, "phase", "locale", "ms", "downloaded", "parsed", "entries"));
+        for (Span span : sorted) {
+            appendRow(builder, format, span.phase, span.locale != null ? span.locale : "-", span.nanos,
+                    span.bytesDownloaded, span.bytesParsed, span.entries);
+        }
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        for (Span span : sorted) {
+            long[] total = totals.computeIfAbsent(span.phase, phase -> new long[4]);
+            total[0] += span.nanos;
+            total[1] += span.bytesDownloaded;
+            total[2] += span.bytesParsed;
+            total[3] += span.entries;
+        }
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            long[] total = entry.getValue();
+            appendRow(builder, format, entry.getKey(), "total", total[0], total[1], total[2], total[3]);
+        }
+        logger.info(builder.toString().trim());
+    }
+
+    private static void appendRow(@Nonnull StringBuilder builder, @Nonnull String format, @Nonnull String phase,
+                                  @Nonnull String locale, long nanos, long downloaded, long parsed, long entries) {
+        builder.append(String.format(format, phase, locale, String.format("%.1f", nanos / 1e6),
+                downloaded > 0 ? formatBytes(downloaded) : "-", parsed > 0 ? formatBytes(parsed) : "-",
+                entries > 0 ? String.valueOf(entries) : "-"));
+    }
+
+    @Nonnull
+    private static String formatBytes(long bytes) {
+        return bytes < 1024 ? bytes + " B" : String.format("%.1f KiB", bytes / 1024.0);
+    }
+
+    /**
+     * Write every span to {@code file} as JSON, for comparing startups across versions.
+     */
+    void write(@Nonnull File file, @Nonnull String pluginVersion, @Nonnull String minecraftVersion)
+            throws IOException {
+        JsonObject root = new JsonObject();
+        root.addProperty("pluginVersion", pluginVersion);
+        root.addProperty("minecraftVersion", minecraftVersion);
+        root.addProperty("timestamp", System.currentTimeMillis());
+        root.addProperty("totalMillis", (System.nanoTime() - startNanos) / 1e6);
+        JsonArray array = new JsonArray();
+        for (Span span : sortedSpans()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("phase", span.phase);
+            if (span.locale != null) {
+                object.addProperty("locale", span.locale);
+            }
+            object.addProperty("startMillis", (span.spanStartNanos - startNanos) / 1e6);
+            object.addProperty("millis", span.nanos / 1e6);
+            object.addProperty("bytesDownloaded", span.bytesDownloaded);
+            object.addProperty("bytesParsed", span.bytesParsed);
+            object.addProperty("entries", span.entries);
+            array.add(object);
+        }
+        root.add("spans", array);
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(root, writer);
+        }
+    }
+}
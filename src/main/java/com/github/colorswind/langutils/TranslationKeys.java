@@ -0,0 +1,70 @@
+package com.github.colorswind.langutils;
+
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Biome;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.EntityType;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+
+final class TranslationKeys {
+    static final int MAX_CACHED_LEVEL = 10;
+
+    static final String[] MATERIAL;
+    static final String[] ENTITY_TYPE;
+    static final String[] BIOME;
+    static final Enchantment[] ENCHANTMENTS;
+    static final String[] ENCHANTMENT;
+    static final String[] ENCHANTMENT_LEVEL;
+    private static final Map<NamespacedKey, Integer> ENCHANTMENT_INDEX;
+
+    static {
+        Material[] materials = Material.values();
+        MATERIAL = new String[materials.length];
+        for (Material material : materials) {
+            // legacy materials have no translation key on modern servers
+            if (material.isLegacy()) { continue; }
+            MATERIAL[material.ordinal()] = TranslationHelper.PROVIDER.getItemTranslationKey(material);
+        }
+
+        EntityType[] entityTypes = EntityType.values();
+        ENTITY_TYPE = new String[entityTypes.length];
+        for (EntityType entityType : entityTypes) {
+            if (entityType == EntityType.UNKNOWN) { continue; }
+            ENTITY_TYPE[entityType.ordinal()] = TranslationHelper.PROVIDER.getEntityTranslationKey(entityType);
+        }
+
+        Biome[] biomes = Biome.values();
+        BIOME = new String[biomes.length];
+        for (Biome biome : biomes) {
+            BIOME[biome.ordinal()] = TranslationHelper.PROVIDER.getBiomeTranslationKey(biome);
+        }
+
+        ENCHANTMENTS = Enchantment.values();
+        ENCHANTMENT = new String[ENCHANTMENTS.length];
+        ENCHANTMENT_INDEX = new HashMap<>();
+        for (int i = 0; i < ENCHANTMENTS.length; i++) {
+            ENCHANTMENT[i] = TranslationHelper.PROVIDER.getEnchantmentTranslationKey(ENCHANTMENTS[i]);
+            ENCHANTMENT_INDEX.put(ENCHANTMENTS[i].getKey(), i);
+        }
+
+        ENCHANTMENT_LEVEL = new String[MAX_CACHED_LEVEL + 1];
+        for (int level = 0; level <= MAX_CACHED_LEVEL; level++) {
+            ENCHANTMENT_LEVEL[level] = TranslationHelper.PROVIDER.getEnchantmentLevelTranslationKey(level);
+        }
+    }
+
+    private TranslationKeys() {
+    }
+
+    /**
+     * @return index of the enchantment in {@link #ENCHANTMENTS}, or -1 if it was registered after the table was built
+     */
+    static int indexOf(@Nonnull Enchantment enchantment) {
+        Integer index = ENCHANTMENT_INDEX.get(enchantment.getKey());
+        return index != null ? index : -1;
+    }
+}
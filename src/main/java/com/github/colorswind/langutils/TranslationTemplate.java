@@ -0,0 +1,117 @@
+package com.github.colorswind.langutils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A translation value split into literal segments and argument slots, following Minecraft's rules: {@code %s} takes
+ * the next implicit argument, {@code %n$s} takes argument {@code n} and {@code %%} is a literal percent sign.
+ */
+final class TranslationTemplate {
+    // literals[i] is followed by the argument argumentIndexes[i]; the last literal has no argument after it
+    private final String[] literals;
+    private final int[] argumentIndexes;
+    // specifier text, rendered as-is when the caller passes too few arguments
+    private final String[] specifiers;
+    private final int literalLength;
+
+    private TranslationTemplate(@Nonnull List<String> literals, @Nonnull List<Integer> argumentIndexes,
+                                @Nonnull List<String> specifiers) {
+        this.literals = literals.toArray(new String[0]);
+        this.argumentIndexes = new int[argumentIndexes.size()];
+        for (int i = 0; i < this.argumentIndexes.length; i++) {
+            this.argumentIndexes[i] = argumentIndexes.get(i);
+        }
+        this.specifiers = specifiers.toArray(new String[0]);
+        int literalLength = 0;
+        for (String literal : this.literals) {
+            literalLength += literal.length();
+        }
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * @return the compiled template, or null if {@code value} contains no format specifier
+     */
+    @Nullable
+    static TranslationTemplate compile(@Nonnull String value) {
+        if (value.indexOf('%') < 0) { return null; }
+        List<String> literals = new ArrayList<>();
+        List<Integer> argumentIndexes = new ArrayList<>();
+        List<String> specifiers = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int implicitIndex = 0;
+        boolean hasSpecifier = false;
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c != '%' || i + 1 >= length) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            char next = value.charAt(i + 1);
+            if (next == '%') {
+                literal.append('%');
+                hasSpecifier = true;
+                i += 2;
+                continue;
+            }
+            int argumentIndex = -1;
+            int end = -1;
+            if (next == 's') {
+                argumentIndex = implicitIndex++;
+                end = i + 2;
+            } else if (next >= '1' && next <= '9') {
+                int j = i + 1;
+                int explicitIndex = 0;
+                while (j < length && Character.isDigit(value.charAt(j))) {
+                    explicitIndex = explicitIndex * 10 + (value.charAt(j) - '0');
+                    j++;
+                }
+                if (j + 1 < length && value.charAt(j) == '$' && value.charAt(j + 1) == 's') {
+                    argumentIndex = explicitIndex - 1;
+                    end = j + 2;
+                }
+            }
+            if (argumentIndex < 0) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            argumentIndexes.add(argumentIndex);
+            specifiers.add(value.substring(i, end));
+            hasSpecifier = true;
+            i = end;
+        }
+        if (!hasSpecifier) { return null; }
+        literals.add(literal.toString());
+        return new TranslationTemplate(literals, argumentIndexes, specifiers);
+    }
+
+    @Nonnull
+    String render(@Nonnull Object[] args) {
+        StringBuilder builder = new StringBuilder(literalLength + 16 * argumentIndexes.length);
+        for (int i = 0; i < argumentIndexes.length; i++) {
+            builder.append(literals[i]);
+            int argumentIndex = argumentIndexes[i];
+            if (argumentIndex < args.length) {
+                builder.append(args[argumentIndex]);
+            } else {
+                builder.append(specifiers[i]);
+            }
+        }
+        return builder.append(literals[literals.length - 1]).toString();
+    }
+
+    long estimateBytes(@Nonnull MemoryEstimator estimator) {
+        if (!estimator.visit(this)) { return 0; }
+        return MemoryEstimator.object(3, 1, 0) + estimator.strings(literals) + estimator.ints(argumentIndexes)
+                + estimator.strings(specifiers);
+    }
+}
@@ -11,7 +11,9 @@
 package com.meowj.langutils.lang;
 
 import com.github.colorswind.langutils.LangRegistry;
+import com.github.colorswind.langutils.LocaleMap;
 import com.github.colorswind.langutils.TranslationHelper;
+import org.bukkit.Material;
 import org.bukkit.block.Biome;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Entity;
@@ -23,6 +25,8 @@ import org.bukkit.inventory.meta.SkullMeta;
 import org.bukkit.profile.PlayerProfile;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -44,12 +48,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getItemDisplayName(@Nonnull ItemStack item, @Nonnull String locale) {
-        ItemMeta itemMeta = item.getItemMeta();
-        if (itemMeta == null || !itemMeta.hasDisplayName()) {
-            return getItemName(item, locale);
-        } else {
-            return itemMeta.getDisplayName();
-        }
+        return getItemDisplayName(item, LangRegistry.getLocaleMap(locale));
     }
 
     /**
@@ -61,7 +60,124 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getItemDisplayName(@Nonnull ItemStack item, @Nonnull Player player) {
-        return getItemDisplayName(item, player.getLocale());
+        return getItemDisplayName(item, LangRegistry.getLocaleMap(player));
+    }
+
+    /**
+     * Return the display name of the item.
+     *
+     * @param item      The item
+     * @param localeMap The resolved language of the item, see {@link LangRegistry#getLocaleMap(String)}
+     * @return The name of the item
+     */
+    @Nonnull
+    public static String getItemDisplayName(@Nonnull ItemStack item, @Nonnull LocaleMap localeMap) {
+        // getItemMeta() returns a copy, so take it at most once and not at all for plain items
+        ItemMeta itemMeta = item.hasItemMeta() ? item.getItemMeta() : null;
+        if (itemMeta == null || !itemMeta.hasDisplayName()) {
+            return getItemName(item, itemMeta, localeMap);
+        } else {
+            return itemMeta.getDisplayName();
+        }
+    }
+
+    /**
+     * Return the display names of several items, e.g. the contents of an inventory.
+     *
+     * @param items  The items, may contain null for empty slots
+     * @param locale The language of the names
+     * @param names  The array to fill, {@code names[i]} receives the name of {@code items[i]} (null for null items)
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getItemDisplayNames(@Nonnull ItemStack[] items, @Nonnull String locale,
+                                               @Nonnull String[] names) {
+        return getItemDisplayNames(items, LangRegistry.getLocaleMap(locale), names);
+    }
+
+    /**
+     * Return the display names of several items, e.g. the contents of an inventory.
+     *
+     * @param items  The items, may contain null for empty slots
+     * @param player The receiver of the names
+     * @param names  The array to fill, {@code names[i]} receives the name of {@code items[i]} (null for null items)
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getItemDisplayNames(@Nonnull ItemStack[] items, @Nonnull Player player,
+                                               @Nonnull String[] names) {
+        return getItemDisplayNames(items, LangRegistry.getLocaleMap(player), names);
+    }
+
+    /**
+     * Return the display names of several items, e.g. the contents of an inventory.
+     *
+     * @param items     The items, may contain null for empty slots
+     * @param localeMap The resolved language of the names, see {@link LangRegistry#getLocaleMap(String)}
+     * @param names     The array to fill, {@code names[i]} receives the name of {@code items[i]} (null for null items)
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getItemDisplayNames(@Nonnull ItemStack[] items, @Nonnull LocaleMap localeMap,
+                                               @Nonnull String[] names) {
+        checkCapacity(names, items.length);
+        for (int i = 0; i < items.length; i++) {
+            names[i] = items[i] != null ? getItemDisplayName(items[i], localeMap) : null;
+        }
+        return names;
+    }
+
+    /**
+     * Return the display names of several items.
+     *
+     * @param items  The items in iteration order, may contain null
+     * @param locale The language of the names
+     * @param names  The array to fill in iteration order (null for null items)
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getItemDisplayNames(@Nonnull Collection<? extends ItemStack> items, @Nonnull String locale,
+                                               @Nonnull String[] names) {
+        return getItemDisplayNames(items, LangRegistry.getLocaleMap(locale), names);
+    }
+
+    /**
+     * Return the display names of several items.
+     *
+     * @param items  The items in iteration order, may contain null
+     * @param player The receiver of the names
+     * @param names  The array to fill in iteration order (null for null items)
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getItemDisplayNames(@Nonnull Collection<? extends ItemStack> items, @Nonnull Player player,
+                                               @Nonnull String[] names) {
+        return getItemDisplayNames(items, LangRegistry.getLocaleMap(player), names);
+    }
+
+    /**
+     * Return the display names of several items.
+     *
+     * @param items     The items in iteration order, may contain null
+     * @param localeMap The resolved language of the names, see {@link LangRegistry#getLocaleMap(String)}
+     * @param names     The array to fill in iteration order (null for null items)
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getItemDisplayNames(@Nonnull Collection<? extends ItemStack> items,
+                                               @Nonnull LocaleMap localeMap, @Nonnull String[] names) {
+        checkCapacity(names, items.size());
+        int i = 0;
+        for (ItemStack item : items) {
+            names[i++] = item != null ? getItemDisplayName(item, localeMap) : null;
+        }
+        return names;
+    }
+
+    private static void checkCapacity(@Nonnull String[] names, int size) {
+        if (names.length < size) {
+            throw new IllegalArgumentException("Name array is too small: " + names.length + " < " + size);
+        }
     }
 
     /**
@@ -74,17 +190,34 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getItemName(@Nonnull ItemStack item, @Nonnull String locale) {
-        String translated = translateToLocal(getItemUnlocalizedName(item), locale);
-        ItemMeta itemMeta = item.getItemMeta();
+        return getItemName(item, LangRegistry.getLocaleMap(locale));
+    }
+
+    /**
+     * Return the localized name of the item.
+     *
+     * @param item      The item
+     * @param localeMap The resolved language of the item, see {@link LangRegistry#getLocaleMap(String)}
+     * @return The localized name. if the item doesn't have a localized name, this method will return the unlocalized
+     * name of it.
+     */
+    @Nonnull
+    public static String getItemName(@Nonnull ItemStack item, @Nonnull LocaleMap localeMap) {
+        return getItemName(item, item.hasItemMeta() ? item.getItemMeta() : null, localeMap);
+    }
+
+    @Nonnull
+    private static String getItemName(@Nonnull ItemStack item, @Nullable ItemMeta itemMeta,
+                                      @Nonnull LocaleMap localeMap) {
         if (itemMeta instanceof SkullMeta) {
             SkullMeta skullMeta = (SkullMeta) itemMeta;
             PlayerProfile profile = skullMeta.getOwnerProfile();
             String playerName = profile != null ? profile.getName() : null;
             if (playerName != null) {
-                translated = translated.replace("%s", playerName);
+                return localeMap.translate(getItemUnlocalizedName(item), playerName);
             }
         }
-        return translated;
+        return localeMap.translate(getItemUnlocalizedName(item));
     }
 
     /**
@@ -96,7 +229,33 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getItemName(@Nonnull ItemStack item, @Nonnull Player player) {
-        return getItemName(item, player.getLocale());
+        return getItemName(item, LangRegistry.getLocaleMap(player));
+    }
+
+    /**
+     * Return the localized name of the material.
+     *
+     * @param material The material
+     * @param locale   The language of the material
+     * @return The localized name. if the material doesn't have a localized name, this method will return the
+     * unlocalized name of it.
+     */
+    @Nonnull
+    public static String getMaterialName(@Nonnull Material material, @Nonnull String locale) {
+        return LangRegistry.getLocaleMap(locale).getMaterialName(material);
+    }
+
+    /**
+     * Return the localized name of the material.
+     *
+     * @param material The material
+     * @param player   The receiver of the name
+     * @return The localized name. if the material doesn't have a localized name, this method will return the
+     * unlocalized name of it.
+     */
+    @Nonnull
+    public static String getMaterialName(@Nonnull Material material, @Nonnull Player player) {
+        return LangRegistry.getLocaleMap(player).getMaterialName(material);
     }
 
     /**
@@ -133,7 +292,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getBiomeName(@Nonnull Biome biome, @Nonnull String locale) {
-        return translateToLocal(getBiomeUnlocalizedName(biome), locale);
+        return LangRegistry.getLocaleMap(locale).getBiomeName(biome);
     }
 
     /**
@@ -146,7 +305,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getBiomeName(@Nonnull Biome biome, @Nonnull Player player) {
-        return getBiomeName(biome, player.getLocale());
+        return LangRegistry.getLocaleMap(player).getBiomeName(biome);
     }
 
     /**
@@ -183,7 +342,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEntityDisplayName(@Nonnull Entity entity, @Nonnull String locale) {
-        return entity.getCustomName() != null ? entity.getCustomName() : getEntityName(entity, locale);
+        return getEntityDisplayName(entity, LangRegistry.getLocaleMap(locale));
     }
 
     /**
@@ -195,7 +354,67 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEntityDisplayName(@Nonnull Entity entity, @Nonnull Player player) {
-        return getEntityDisplayName(entity, player.getLocale());
+        return getEntityDisplayName(entity, LangRegistry.getLocaleMap(player));
+    }
+
+    /**
+     * Return the display name of the entity.
+     *
+     * @param entity    The entity
+     * @param localeMap The resolved language of the entity, see {@link LangRegistry#getLocaleMap(String)}
+     * @return The name of the entity
+     */
+    @Nonnull
+    public static String getEntityDisplayName(@Nonnull Entity entity, @Nonnull LocaleMap localeMap) {
+        String customName = entity.getCustomName();
+        return customName != null ? customName : localeMap.getEntityTypeName(entity.getType());
+    }
+
+    /**
+     * Return the display names of several entities.
+     *
+     * @param entities The entities in iteration order
+     * @param locale   The language of the names
+     * @param names    The array to fill in iteration order
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getEntityDisplayNames(@Nonnull Collection<? extends Entity> entities,
+                                                 @Nonnull String locale, @Nonnull String[] names) {
+        return getEntityDisplayNames(entities, LangRegistry.getLocaleMap(locale), names);
+    }
+
+    /**
+     * Return the display names of several entities.
+     *
+     * @param entities The entities in iteration order
+     * @param player   The receiver of the names
+     * @param names    The array to fill in iteration order
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getEntityDisplayNames(@Nonnull Collection<? extends Entity> entities,
+                                                 @Nonnull Player player, @Nonnull String[] names) {
+        return getEntityDisplayNames(entities, LangRegistry.getLocaleMap(player), names);
+    }
+
+    /**
+     * Return the display names of several entities.
+     *
+     * @param entities  The entities in iteration order
+     * @param localeMap The resolved language of the names, see {@link LangRegistry#getLocaleMap(String)}
+     * @param names     The array to fill in iteration order
+     * @return {@code names}
+     */
+    @Nonnull
+    public static String[] getEntityDisplayNames(@Nonnull Collection<? extends Entity> entities,
+                                                 @Nonnull LocaleMap localeMap, @Nonnull String[] names) {
+        checkCapacity(names, entities.size());
+        int i = 0;
+        for (Entity entity : entities) {
+            names[i++] = getEntityDisplayName(entity, localeMap);
+        }
+        return names;
     }
 
     /**
@@ -208,7 +427,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEntityName(@Nonnull Entity entity, @Nonnull String locale) {
-        return translateToLocal(getEntityUnlocalizedName(entity), locale);
+        return LangRegistry.getLocaleMap(locale).getEntityTypeName(entity.getType());
     }
 
     /**
@@ -221,7 +440,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEntityName(@Nonnull Entity entity, @Nonnull Player player) {
-        return getEntityName(entity, player.getLocale());
+        return LangRegistry.getLocaleMap(player).getEntityTypeName(entity.getType());
     }
 
     /**
@@ -234,7 +453,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEntityName(@Nonnull EntityType entityType, @Nonnull String locale) {
-        return translateToLocal(getEntityUnlocalizedName(entityType), locale);
+        return LangRegistry.getLocaleMap(locale).getEntityTypeName(entityType);
     }
 
     /**
@@ -247,7 +466,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEntityName(@Nonnull EntityType entityType, @Nonnull Player player) {
-        return getEntityName(entityType, player.getLocale());
+        return LangRegistry.getLocaleMap(player).getEntityTypeName(entityType);
     }
 
 
@@ -271,7 +490,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEnchantmentLevelName(int level, Player player) {
-        return translateToLocal(getEnchantmentLevelUnlocalizedName(level), player.getLocale());
+        return LangRegistry.getLocaleMap(player).getEnchantmentLevelName(level);
     }
 
     /**
@@ -283,7 +502,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEnchantmentLevelName(int level, @Nonnull String locale) {
-        return translateToLocal(getEnchantmentLevelUnlocalizedName(level), locale);
+        return LangRegistry.getLocaleMap(locale).getEnchantmentLevelName(level);
     }
 
     /**
@@ -306,7 +525,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEnchantmentName(@Nonnull Enchantment enchantment, @Nonnull Player player) {
-        return getEnchantmentName(enchantment, player.getLocale());
+        return LangRegistry.getLocaleMap(player).getEnchantmentName(enchantment);
     }
 
     /**
@@ -318,7 +537,7 @@ public class LanguageHelper {
      */
     @Nonnull
     public static String getEnchantmentName(@Nonnull Enchantment enchantment, @Nonnull String locale) {
-        return translateToLocal(getEnchantmentUnlocalizedName(enchantment), locale);
+        return LangRegistry.getLocaleMap(locale).getEnchantmentName(enchantment);
     }
 
     /**
@@ -332,7 +551,7 @@ public class LanguageHelper {
     @Nonnull
     public static String getEnchantmentDisplayName(@Nonnull Enchantment enchantment, int level,
                                                    @Nonnull Player player) {
-        return getEnchantmentDisplayName(enchantment, level, player.getLocale());
+        return getEnchantmentDisplayName(enchantment, level, LangRegistry.getLocaleMap(player));
     }
 
     /**
@@ -346,9 +565,21 @@ public class LanguageHelper {
     @Nonnull
     public static String getEnchantmentDisplayName(@Nonnull Enchantment enchantment, int level,
                                                    @Nonnull String locale) {
-        String name = getEnchantmentName(enchantment, locale);
-        String enchLevel = getEnchantmentLevelName(level, locale);
-        return name + (!enchLevel.isEmpty() ? " " + enchLevel : "");
+        return getEnchantmentDisplayName(enchantment, level, LangRegistry.getLocaleMap(locale));
+    }
+
+    /**
+     * Return the display name of the enchantment(with level).
+     *
+     * @param enchantment The enchantment
+     * @param level       The enchantment level
+     * @param localeMap   The resolved language of the name, see {@link LangRegistry#getLocaleMap(String)}
+     * @return The name of the item
+     */
+    @Nonnull
+    public static String getEnchantmentDisplayName(@Nonnull Enchantment enchantment, int level,
+                                                   @Nonnull LocaleMap localeMap) {
+        return localeMap.getEnchantmentDisplayName(enchantment, level);
     }
 
     /**
@@ -381,10 +612,42 @@ public class LanguageHelper {
      *
      * @param translationKey The unlocalized entry.
      * @param locale         The language to be translated to.
-     * @return The localized entry. If the localized entry doesn't exist, it will first look up the fallback language
-     * map. If the entry still doesn't exist, then return the unlocalized name.
+     * @return The localized entry. If the localized entry doesn't exist, it will look up the fallback chain of the
+     * language, the fallback language and en_us in turn. If the entry still doesn't exist, then return the unlocalized
+     * name. Entries filtered out by {@code IncludeKeys} and {@code ExcludeKeys} in the config are never loaded, and
+     * looking one up logs a warning.
      */
     public static String translateToLocal(@Nonnull String translationKey, @Nonnull String locale) {
         return LangRegistry.getLocaleMap(locale).translate(translationKey);
     }
+
+    /**
+     * Translate a parameterized entry, e.g. a death message or {@code chat.type.advancement.task}.
+     *
+     * @param translationKey The unlocalized entry.
+     * @param locale         The language to be translated to.
+     * @param args           The arguments substituted for {@code %s} and {@code %n$s}.
+     * @return The localized entry with the arguments filled in. If the entry doesn't exist, return the unlocalized
+     * name.
+     */
+    @Nonnull
+    public static String translateToLocal(@Nonnull String translationKey, @Nonnull String locale,
+                                          @Nonnull Object... args) {
+        return LangRegistry.getLocaleMap(locale).translate(translationKey, args);
+    }
+
+    /**
+     * Translate a parameterized entry, e.g. a death message or {@code chat.type.advancement.task}.
+     *
+     * @param translationKey The unlocalized entry.
+     * @param player         The receiver of the entry.
+     * @param args           The arguments substituted for {@code %s} and {@code %n$s}.
+     * @return The localized entry with the arguments filled in. If the entry doesn't exist, return the unlocalized
+     * name.
+     */
+    @Nonnull
+    public static String translateToLocal(@Nonnull String translationKey, @Nonnull Player player,
+                                          @Nonnull Object... args) {
+        return LangRegistry.getLocaleMap(player).translate(translationKey, args);
+    }
 }